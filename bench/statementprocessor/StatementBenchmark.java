@@ -0,0 +1,173 @@
+// StatementBenchmark.java
+package statementprocessor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Benchmarks for parsing, validating and reporting customer statements.
+ * <p>
+ * Every benchmark runs a number of warm-up iterations followed by measured iterations on synthetic statements made by
+ * {@link StatementGenerator}, and reports the average time per run, the throughput in records per second (and bytes
+ * per second for the file readers), the bytes allocated per record by the benchmark thread and the garbage collector
+ * activity during the measured iterations.
+ * </p>
+ * Usage (from the project root, after compiling <code>src</code> and <code>bench</code>):
+ * <pre>
+ * java -Xmx4g -cp out statementprocessor.StatementBenchmark [--sizes=10000,1000000,10000000] [--warmup=3]
+ *      [--iterations=5] [--duplicates=0.01] [--errors=0.01] [--only=readCSV]
+ * </pre>
+ * Allocation is measured for the benchmark thread only, so the numbers of the multi-threaded benchmarks do not include
+ * the allocations of their worker threads.
+ */
+public class StatementBenchmark {
+    private static final PrintStream NULL_OUT = new PrintStream(OutputStream.nullOutputStream());
+    // Written after every benchmark, so the JIT cannot remove the work of the workloads
+    static volatile long blackhole;
+
+    private interface Workload {
+        /**
+         * @return the number of records processed, which also keeps the JIT from removing the work
+         */
+        long run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("sizes", "10000,1000000");
+        options.put("warmup", "3");
+        options.put("iterations", "5");
+        options.put("duplicates", "0.01");
+        options.put("errors", "0.01");
+        options.put("only", "");
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0 || !options.containsKey(arg.substring(2, separator))) {
+                throw new IllegalArgumentException("Unknown argument " + arg + ", expected one of --" + String.join("=, --", options.keySet()) + "=");
+            }
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+
+        StatementGenerator generator = new StatementGenerator(
+                Double.parseDouble(options.get("duplicates")), Double.parseDouble(options.get("errors")), 42);
+        int warmup = Integer.parseInt(options.get("warmup"));
+        int iterations = Integer.parseInt(options.get("iterations"));
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("%-36s %10s %12s %14s %10s %12s %8s %8s%n",
+                "Benchmark", "Records", "ms/op", "records/s", "MB/s", "alloc B/rec", "GCs", "GC ms");
+        Path directory = Files.createTempDirectory("statement-benchmark");
+        try {
+            for (String sizeOption : options.get("sizes").split(",")) {
+                int size = Integer.parseInt(sizeOption.trim());
+                Path csv = directory.resolve("statement-" + size + ".csv");
+                Path xml = directory.resolve("statement-" + size + ".xml");
+                generator.writeCSV(csv, size);
+                generator.writeXML(xml, size);
+                List<Record> records = generator.records(size);
+                List<Record> failedRecords = Validator.validateRecords(records);
+                String[] mutations = new String[size];
+                for (int i = 0; i < size; i++) {
+                    Record record = records.get(i);
+                    mutations[i] = record.getMutationType() + record.getMutationAmount().toPlainString();
+                }
+
+                Map<String, Workload> benchmarks = new LinkedHashMap<>();
+                benchmarks.put("FileReaderUtil.readCSV", () -> FileReaderUtil.readCSV(csv.toString()).size());
+                benchmarks.put("FileReaderUtil.readCSVParallel", () -> FileReaderUtil.readCSVParallel(csv.toString(), threads).size());
+                benchmarks.put("FileReaderUtil.readXML", () -> FileReaderUtil.readXML(xml.toString()).size());
+                benchmarks.put("StatementPipeline.process(mmap)", () -> {
+                    try (RecordReader reader = FileReaderUtil.openCSVMapped(csv.toString())) {
+                        return StatementPipeline.process(reader, new Validator(), new ReportGenerator(NULL_OUT));
+                    }
+                });
+                benchmarks.put("Record.<init>", () -> {
+                    long checksum = 0;
+                    for (int i = 0; i < size; i++) {
+                        Record record = records.get(i);
+                        checksum += new Record(record.getTransactionReference(), record.getAccountNumber(),
+                                record.getDescription(), record.getStartBalance(), mutations[i],
+                                record.getEndBalance()).getMutationAmountCents();
+                    }
+                    blackhole = checksum;
+                    return size;
+                });
+                benchmarks.put("Validator.validateRecords", () -> Validator.validateRecords(records).size());
+                benchmarks.put("ParallelValidator.validateRecords", () -> ParallelValidator.validateRecords(records, threads).size());
+                benchmarks.put("ReportGenerator.report", () -> {
+                    ReportGenerator report = new ReportGenerator(NULL_OUT);
+                    report.start();
+                    for (Record record : failedRecords) {
+                        report.report(record);
+                    }
+                    report.finish();
+                    return report.getFailedCount();
+                });
+
+                for (Map.Entry<String, Workload> benchmark : benchmarks.entrySet()) {
+                    if (!benchmark.getKey().contains(options.get("only"))) {
+                        continue;
+                    }
+                    long bytes = benchmark.getKey().contains("readXML") ? Files.size(xml)
+                            : benchmark.getKey().contains("CSV") || benchmark.getKey().contains("mmap") ? Files.size(csv) : 0;
+                    int recordsPerRun = benchmark.getKey().startsWith("ReportGenerator") ? failedRecords.size() : size;
+                    run(benchmark.getKey(), benchmark.getValue(), recordsPerRun, bytes, warmup, iterations);
+                }
+                Files.delete(csv);
+                Files.delete(xml);
+            }
+        } finally {
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static void run(String name, Workload workload, int records, long bytes, int warmup, int iterations)
+            throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            workload.run();
+        }
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTime();
+        long allocatedBefore = threadBean.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        long processed = 0;
+        for (int i = 0; i < iterations; i++) {
+            processed += workload.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threadBean.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        blackhole = processed;
+
+        double secondsPerRun = elapsed / 1e9 / iterations;
+        System.out.printf("%-36s %10d %12.2f %14.0f %10s %12.1f %8d %8d%n",
+                name, records, secondsPerRun * 1000, records / secondsPerRun,
+                bytes == 0 ? "-" : String.format("%.1f", bytes / secondsPerRun / (1024 * 1024)),
+                records == 0 ? 0.0 : (double) allocated / iterations / records,
+                gcCount() - gcCountBefore, gcTime() - gcTimeBefore);
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, bean.getCollectionTime());
+        }
+        return time;
+    }
+}
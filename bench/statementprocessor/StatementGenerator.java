@@ -0,0 +1,107 @@
+// StatementGenerator.java
+package statementprocessor;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic customer statements for the benchmarks.
+ * <p>
+ * The statements look like the example files in <code>test/resources</code>. The share of records with a duplicate
+ * transaction reference and the share of records with a wrong end balance can be controlled, and the same seed
+ * always produces the same statement.
+ * </p>
+ */
+public class StatementGenerator {
+    private static final String[] ACCOUNTS = {
+            "NL46ABNA0625805417", "NL43AEGO0773393871", "NL91RABO0315273637", "NL69ABNA0433647324",
+            "NL56RABO0149876948", "NL32RABO0195610843", "NL90ABNA0585647886", "NL74ABNA0248990274"};
+    private static final String[] DESCRIPTIONS = {
+            "Candy from Daniel Bakker", "Flowers for Willem Dekker", "Subscription for Vincent King",
+            "Clothes from Jan de Vries", "Tickets for Erik de Vries", "Subscription from Peter Dekker"};
+
+    private final double duplicateRate;
+    private final double errorRate;
+    private final long seed;
+
+    /**
+     * @param duplicateRate the share of records (0 to 1) that repeat the reference of an earlier record
+     * @param errorRate the share of records (0 to 1) whose end balance does not match
+     * @param seed the seed of the random generator
+     */
+    public StatementGenerator(double duplicateRate, double errorRate, long seed) {
+        this.duplicateRate = duplicateRate;
+        this.errorRate = errorRate;
+        this.seed = seed;
+    }
+
+    /**
+     * Generates the rows of a statement as CSV fields, in the order of the CSV columns.
+     */
+    private void generate(int count, RowConsumer consumer) throws IOException {
+        Random random = new Random(seed);
+        for (int i = 0; i < count; i++) {
+            int reference = i > 0 && random.nextDouble() < duplicateRate ? 100_000 + random.nextInt(i) : 100_000 + i;
+            long startBalance = random.nextInt(1_000_000) - 100_000;
+            long mutation = random.nextInt(200_000) - 100_000;
+            long endBalance = startBalance + mutation + (random.nextDouble() < errorRate ? 1 + random.nextInt(100) : 0);
+            consumer.accept(
+                    String.valueOf(reference),
+                    ACCOUNTS[random.nextInt(ACCOUNTS.length)],
+                    DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)],
+                    BigDecimal.valueOf(startBalance, 2).toPlainString(),
+                    (mutation < 0 ? "-" : "+") + BigDecimal.valueOf(Math.abs(mutation), 2).toPlainString(),
+                    BigDecimal.valueOf(endBalance, 2).toPlainString());
+        }
+    }
+
+    /**
+     * @param count the number of records
+     * @return the records of a statement
+     */
+    public List<Record> records(int count) throws IOException {
+        List<Record> records = new ArrayList<>(count);
+        generate(count, (reference, account, description, start, mutation, end) -> records.add(new Record(
+                Integer.parseInt(reference), account, description, new BigDecimal(start), mutation, new BigDecimal(end))));
+        return records;
+    }
+
+    /**
+     * Writes a statement in the CSV format read by {@link FileReaderUtil#readCSV(String)}.
+     */
+    public void writeCSV(Path file, int count) throws IOException {
+        try (Writer writer = new BufferedWriter(Files.newBufferedWriter(file, Charset.defaultCharset()), 1 << 16)) {
+            writer.write("Reference,Account Number,Description,Start Balance,Mutation,End Balance\n");
+            generate(count, (reference, account, description, start, mutation, end) -> writer.write(
+                    reference + ',' + account + ',' + description + ',' + start + ',' + mutation + ',' + end + '\n'));
+        }
+    }
+
+    /**
+     * Writes a statement in the XML format read by {@link FileReaderUtil#readXML(String)}.
+     */
+    public void writeXML(Path file, int count) throws IOException {
+        try (Writer writer = new BufferedWriter(Files.newBufferedWriter(file), 1 << 16)) {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<records>\n");
+            generate(count, (reference, account, description, start, mutation, end) -> writer.write(
+                    "<record reference=\"" + reference + "\"><accountNumber>" + account
+                            + "</accountNumber><description>" + description + "</description><startBalance>" + start
+                            + "</startBalance><mutation>" + mutation + "</mutation><endBalance>" + end
+                            + "</endBalance></record>\n"));
+            writer.write("</records>\n");
+        }
+    }
+
+    private interface RowConsumer {
+        void accept(String reference, String account, String description, String startBalance, String mutation,
+                    String endBalance) throws IOException;
+    }
+}
@@ -0,0 +1,213 @@
+// AbstractReportWriter.java
+package statementprocessor;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base class for {@link ReportWriter}s that write a text based format to a {@link Writer}.
+ * <p>
+ * Output is meant to be buffered: nothing is flushed until {@link #finish()}, so writing a failed record is a memory
+ * copy instead of a (synchronized, auto-flushing) write to e.g. {@code System.out}. Console outputs, see
+ * {@link #consoleWriter(OutputStream)}, are also flushed within a second of every failed record, but at most once per
+ * second, so failures show up while the statement is still being processed, even when they are few and far between.
+ * </p>
+ */
+abstract class AbstractReportWriter implements ReportWriter {
+    /**
+     * The buffer size used for report outputs: large enough to write millions of failed records in few system calls.
+     */
+    static final int BUFFER_SIZE = 1 << 20;
+    /**
+     * The minimum time between two flushes of a console output.
+     */
+    static final long CONSOLE_FLUSH_INTERVAL_NANOS = 1_000_000_000L;
+
+    protected final Writer out;
+    private final ConsoleWriter console;
+    private long failedCount;
+    private String source;
+
+    AbstractReportWriter(Writer out) {
+        this.out = out;
+        this.console = out instanceof ConsoleWriter ? (ConsoleWriter) out : null;
+    }
+
+    /**
+     * Creates a buffered writer for a report on the given stream.
+     *
+     * @param stream the stream to write to
+     * @param closeStream whether closing the writer closes the stream; use {@code false} for {@code System.out}
+     * @return the buffered writer
+     */
+    static Writer bufferedWriter(OutputStream stream, boolean closeStream) {
+        OutputStream target = closeStream ? stream : new FilterOutputStream(stream) {
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                out.write(bytes, offset, length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+        return new BufferedWriter(new OutputStreamWriter(target), BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a buffered writer for a report on the console, e.g. {@code System.out}, which is not closed by the
+     * writer. A report writer on a console writer flushes the first failed record straight away, and later ones once
+     * a second has passed since the last flush, from a background timer when no further record arrives, so a person
+     * watching the console sees failures while the file is still being processed.
+     *
+     * @param stream the console stream to write to
+     * @return the buffered writer
+     */
+    static Writer consoleWriter(OutputStream stream) {
+        return new ConsoleWriter(bufferedWriter(stream, false));
+    }
+
+    /**
+     * A console output, see {@link #consoleWriter(OutputStream)}. Its monitor is held while a failed record is
+     * written, so a timed flush never shows half a record.
+     */
+    private static final class ConsoleWriter extends FilterWriter {
+        private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "console-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        private long lastFlush = System.nanoTime() - CONSOLE_FLUSH_INTERVAL_NANOS;
+        private ScheduledFuture<?> pendingFlush;
+
+        private ConsoleWriter(Writer out) {
+            super(out);
+        }
+
+        /**
+         * Flushes now when a second has passed since the last flush, and otherwise makes sure a flush is scheduled
+         * for when it has. Must be called while holding the monitor of this writer.
+         */
+        private void recordWritten() throws IOException {
+            long sinceFlush = System.nanoTime() - lastFlush;
+            if (sinceFlush >= CONSOLE_FLUSH_INTERVAL_NANOS) {
+                flush();
+            } else if (pendingFlush == null) {
+                pendingFlush = FLUSHER.schedule(this::timedFlush, CONSOLE_FLUSH_INTERVAL_NANOS - sinceFlush, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private synchronized void timedFlush() {
+            pendingFlush = null;
+            try {
+                flush();
+            } catch (IOException e) {
+                // The error shows up again on the next flush of the report writer
+            }
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            lastFlush = System.nanoTime();
+            if (pendingFlush != null) {
+                pendingFlush.cancel(false);
+                pendingFlush = null;
+            }
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (this) {
+                if (pendingFlush != null) {
+                    pendingFlush.cancel(false);
+                    pendingFlush = null;
+                }
+            }
+            out.close();
+        }
+    }
+
+    @Override
+    public void start() throws IOException {
+        writeHeader();
+    }
+
+    @Override
+    public void resume(long failedCount) {
+        this.failedCount = failedCount;
+    }
+
+    @Override
+    public void report(Record record, FailureReason reason) throws IOException {
+        failedCount++;
+        if (console == null) {
+            writeRecord(record, reason);
+            return;
+        }
+        synchronized (console) {
+            writeRecord(record, reason);
+            console.recordWritten();
+        }
+    }
+
+    @Override
+    public void setSource(String source) throws IOException {
+        if (!source.equals(this.source)) {
+            this.source = source;
+            writeSource(source);
+        }
+    }
+
+    /**
+     * @return the statement file set with {@link #setSource(String)}, or {@code null}
+     */
+    protected String getSource() {
+        return source;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        writeFooter();
+        out.flush();
+    }
+
+    @Override
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    protected abstract void writeHeader() throws IOException;
+
+    protected abstract void writeRecord(Record record, FailureReason reason) throws IOException;
+
+    protected void writeFooter() throws IOException {
+    }
+
+    /**
+     * Called when the failed records that follow come from another statement file.
+     */
+    protected void writeSource(String source) throws IOException {
+    }
+}
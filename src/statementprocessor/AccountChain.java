@@ -0,0 +1,75 @@
+// AccountChain.java
+package statementprocessor;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Checks the balance chain of every account: the start balance of a record must be the end balance of the previous
+ * record of the same account number. The first record of an account starts its chain.
+ * <p>
+ * Only the last end balance of every account is kept, so the memory usage grows with the number of accounts, not
+ * with the number of records: an entry costs the account number and roughly 80 bytes. The balance is kept in cents
+ * and is only kept as a {@link BigDecimal} when it does not fit in cents. Not thread-safe; the
+ * {@link ParallelValidator} gives every partition of the account numbers its own chain.
+ * </p>
+ */
+public class AccountChain {
+    private final Map<String, Balance> lastBalances = new HashMap<>();
+
+    /**
+     * Checks that the record continues the chain of its account, and makes its end balance the end of the chain.
+     * A record that breaks the chain still moves the chain on, so a single wrong record is reported once instead of
+     * breaking the chain of all records after it.
+     *
+     * @param record the next record of its account, in file order
+     * @return {@code true} if the start balance of the record matches the previous end balance of its account, or if
+     * it is the first record of the account
+     */
+    public boolean follows(Record record) {
+        Balance last = lastBalances.get(record.getAccountNumber());
+        if (last == null) {
+            lastBalances.put(record.getAccountNumber(), new Balance(record));
+            return true;
+        }
+        boolean follows = last.matchesStartOf(record);
+        last.setEndOf(record);
+        return follows;
+    }
+
+    /**
+     * @return the number of accounts seen so far
+     */
+    public int size() {
+        return lastBalances.size();
+    }
+
+    /**
+     * The last end balance of an account, updated in place for every record of the account.
+     */
+    private static final class Balance {
+        private long cents;
+        // Only set when the balance does not fit in cents
+        private BigDecimal exact;
+
+        private Balance(Record record) {
+            setEndOf(record);
+        }
+
+        private void setEndOf(Record record) {
+            cents = record.getEndBalanceCents();
+            exact = cents == FixedPoint.NOT_REPRESENTABLE ? record.getEndBalance() : null;
+        }
+
+        private boolean matchesStartOf(Record record) {
+            long start = record.getStartBalanceCents();
+            if (cents != FixedPoint.NOT_REPRESENTABLE && start != FixedPoint.NOT_REPRESENTABLE) {
+                return cents == start;
+            }
+            BigDecimal end = exact != null ? exact : BigDecimal.valueOf(cents, FixedPoint.SCALE);
+            // Compared by value, so e.g. 550.0 and 550.00 match
+            return end.compareTo(record.getStartBalance()) == 0;
+        }
+    }
+}
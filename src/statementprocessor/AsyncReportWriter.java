@@ -0,0 +1,232 @@
+// AsyncReportWriter.java
+package statementprocessor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * {@link ReportWriter} that hands the failed records to another report writer on a background thread, so formatting
+ * and writing the report never stalls the thread that parses and validates the records.
+ * <p>
+ * Failed records are passed in batches through a bounded queue: when the background thread cannot keep up, the
+ * producing thread waits instead of buffering an unbounded number of records. Any error of the background writer,
+ * also an unchecked one, is rethrown on the next call of the producing thread and on {@link #finish()}.
+ * </p>
+ */
+public class AsyncReportWriter implements ReportWriter {
+    private static final int BATCH_SIZE = 1024;
+    private static final int QUEUE_CAPACITY = 64;
+    private static final List<Command> END = new ArrayList<>();
+
+    private final ReportWriter delegate;
+    private final BlockingQueue<List<Command>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread thread;
+    private volatile Throwable error;
+    private List<Command> batch = new ArrayList<>(BATCH_SIZE);
+    private long failedCount;
+
+    /**
+     * @param delegate the report writer that is called on the background thread, closed when this writer is closed
+     */
+    public AsyncReportWriter(ReportWriter delegate) {
+        this.delegate = delegate;
+        this.thread = new Thread(this::drain, "report-writer");
+        this.thread.setDaemon(true);
+    }
+
+    @Override
+    public void start() throws IOException {
+        delegate.start();
+        thread.start();
+    }
+
+    @Override
+    public void resume(long failedCount) throws IOException {
+        delegate.resume(failedCount);
+        this.failedCount = failedCount;
+        thread.start();
+    }
+
+    @Override
+    public void report(Record record, FailureReason reason) throws IOException {
+        failedCount++;
+        batch.add(new Failure(record, reason));
+        if (batch.size() >= BATCH_SIZE) {
+            hand(batch);
+            batch = new ArrayList<>(BATCH_SIZE);
+        }
+    }
+
+    @Override
+    public void setSource(String source) {
+        batch.add(new SourceChange(source));
+    }
+
+    /**
+     * Hands the failed records reported so far to the background thread, and waits until it has written and flushed
+     * them.
+     */
+    @Override
+    public void flush() throws IOException {
+        FlushRequest request = new FlushRequest();
+        batch.add(request);
+        hand(batch);
+        batch = new ArrayList<>(BATCH_SIZE);
+        try {
+            request.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while flushing the report", e);
+        }
+        checkError();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (!batch.isEmpty()) {
+            hand(batch);
+            batch = new ArrayList<>(BATCH_SIZE);
+        }
+        hand(END);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the report to be written", e);
+        }
+        checkError();
+        delegate.finish();
+    }
+
+    private void hand(List<Command> commands) throws IOException {
+        checkError();
+        try {
+            queue.put(commands);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing the report", e);
+        }
+    }
+
+    private void checkError() throws IOException {
+        if (error != null) {
+            throw new IOException("Failed to write the report: "
+                    + (error.getMessage() != null ? error.getMessage() : error.toString()), error);
+        }
+    }
+
+    /**
+     * Runs on the background thread: writes the batches until the end marker arrives. After an error the batches
+     * are still taken from the queue, so the producing thread never blocks on a full queue.
+     */
+    private void drain() {
+        try {
+            List<Command> commands;
+            while ((commands = queue.take()) != END) {
+                try {
+                    if (error != null) {
+                        continue;
+                    }
+                    for (Command command : commands) {
+                        command.apply(delegate);
+                    }
+                } catch (Throwable e) {
+                    // Also an unchecked error must not end the thread, or the producing thread would block forever
+                    error = e;
+                } finally {
+                    // A waiting flush is released once its batch is done, also when it could not be written
+                    for (Command command : commands) {
+                        command.release();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Only still running when the report was not finished, e.g. because processing failed
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        delegate.close();
+    }
+
+    /**
+     * An entry of the queue, applied to the delegate on the background thread.
+     */
+    private sealed interface Command permits Failure, SourceChange, FlushRequest {
+        void apply(ReportWriter delegate) throws IOException;
+
+        /**
+         * Called once the batch of the command has been applied, also when applying it failed.
+         */
+        default void release() {
+        }
+    }
+
+    /**
+     * A failed record to report.
+     */
+    private static final class Failure implements Command {
+        private final Record record;
+        private final FailureReason reason;
+
+        private Failure(Record record, FailureReason reason) {
+            this.record = record;
+            this.reason = reason;
+        }
+
+        @Override
+        public void apply(ReportWriter delegate) throws IOException {
+            delegate.report(record, reason);
+        }
+    }
+
+    /**
+     * Marks the point in the queue where the source of the failed records changes.
+     */
+    private static final class SourceChange implements Command {
+        private final String source;
+
+        private SourceChange(String source) {
+            this.source = source;
+        }
+
+        @Override
+        public void apply(ReportWriter delegate) throws IOException {
+            delegate.setSource(source);
+        }
+    }
+
+    /**
+     * Marks the point in the queue up to which the report has to be flushed.
+     */
+    private static final class FlushRequest implements Command {
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        @Override
+        public void apply(ReportWriter delegate) throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void release() {
+            done.countDown();
+        }
+    }
+}
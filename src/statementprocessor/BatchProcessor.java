@@ -0,0 +1,241 @@
+// BatchProcessor.java
+package statementprocessor;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Processes many statement files in one run: all CSV and XML files in a directory, or all files matching a glob
+ * pattern such as {@code statements/branch-*.csv}.
+ * <p>
+ * The files are processed concurrently, each with its own {@link Validator}, on virtual threads when the Java runtime
+ * supports them (Java 21 and later) and on a fixed thread pool otherwise. The failed records of each file are
+ * collected in a {@link SpillingReportWriter}, which moves them to a temporary file once there are many, and written
+ * to the single report in the (sorted) order of the files, so the merged report does not depend on which file
+ * finished first. At most {@code maxConcurrentFiles} files are being processed or waiting for their results to be
+ * written at the same time, which bounds the open files, and the failed records kept in memory to
+ * {@value SpillingReportWriter#DEFAULT_MEMORY_LIMIT} per file. A file that cannot be processed completely still has
+ * the failed records found before the error reported.
+ * </p>
+ */
+public class BatchProcessor {
+    private final ProcessorOptions options;
+    private final int maxConcurrentFiles;
+    private final PrintStream errors;
+
+    /**
+     * @param options the options used to read and validate every file
+     * @param maxConcurrentFiles the maximum number of files that are processed at the same time
+     * @param errors the stream that files which cannot be processed are reported to
+     */
+    public BatchProcessor(ProcessorOptions options, int maxConcurrentFiles, PrintStream errors) {
+        this.options = options;
+        this.maxConcurrentFiles = maxConcurrentFiles;
+        this.errors = errors;
+    }
+
+    /**
+     * @param path a file path
+     * @return {@code true} if the path is a directory or a glob pattern, i.e. should be processed in batch mode; an
+     * existing file is never a pattern, even when its name contains glob characters, e.g. {@code statements[2024].csv}
+     */
+    static boolean isBatch(String path) {
+        Path file;
+        try {
+            file = Paths.get(path);
+        } catch (InvalidPathException e) {
+            // E.g. a '*' on Windows
+            return isGlob(path);
+        }
+        return !Files.isRegularFile(file) && (isGlob(path) || Files.isDirectory(file));
+    }
+
+    private static boolean isGlob(String path) {
+        return firstGlobCharacter(path) < path.length();
+    }
+
+    /**
+     * Lists the statement files of a directory (recursively) or a glob pattern, sorted by path. A pattern only
+     * descends into subdirectories as far as its own directories do, or without limit when it contains {@code **}.
+     *
+     * @param path a directory, or a glob pattern
+     * @return the CSV and XML files in the directory, or the files matching the pattern
+     * @throws IOException if a directory cannot be read
+     */
+    static List<Path> findFiles(String path) throws IOException {
+        Path directory = Paths.get(path);
+        PathMatcher matcher = file -> file.toString().endsWith(".csv") || file.toString().endsWith(".xml")
+                || file.toString().endsWith(".acol");
+        int depth = Integer.MAX_VALUE;
+        if (isGlob(path)) {
+            // Start from the deepest directory without glob characters, and match the complete pattern
+            String separator = FileSystems.getDefault().getSeparator();
+            String prefix = path.substring(0, firstGlobCharacter(path));
+            int lastSeparator = prefix.lastIndexOf(separator);
+            String pattern = path.substring(lastSeparator + 1);
+            directory = Paths.get(lastSeparator < 0 ? "." : prefix.substring(0, lastSeparator + 1));
+            if (!pattern.contains(separator) && !pattern.contains("**")) {
+                // Only file names in the directory itself
+                List<Path> files = new ArrayList<>();
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, pattern)) {
+                    for (Path file : entries) {
+                        if (Files.isRegularFile(file)) {
+                            files.add(file);
+                        }
+                    }
+                }
+                Collections.sort(files);
+                return files;
+            }
+            PathMatcher glob = FileSystems.getDefault().getPathMatcher("glob:" + path);
+            if (lastSeparator < 0) {
+                Path workingDirectory = directory;
+                matcher = file -> glob.matches(workingDirectory.relativize(file));
+            } else {
+                matcher = glob;
+            }
+            if (!pattern.contains("**")) {
+                depth = pattern.split(Pattern.quote(separator), -1).length;
+            }
+        }
+        try (Stream<Path> files = Files.walk(directory, depth)) {
+            return files.filter(Files::isRegularFile).filter(matcher::matches).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static int firstGlobCharacter(String path) {
+        for (int i = 0; i < path.length(); i++) {
+            if ("*?[{".indexOf(path.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return path.length();
+    }
+
+    /**
+     * Processes the files concurrently and writes one merged report.
+     *
+     * @param files the statement files, in the order they should appear in the report
+     * @param report the report all failed records are written to
+     * @return the number of files that could not be processed
+     * @throws IOException if the report cannot be written
+     */
+    public int process(List<Path> files, ReportWriter report) throws IOException {
+        Deque<Future<FileResult>> pending = new ArrayDeque<>();
+        int failedFiles = 0;
+        report.start();
+        ExecutorService executor = newExecutor(maxConcurrentFiles);
+        try {
+            for (Path file : files) {
+                // A file counts until its result has been written, so the collected results of files that finished
+                // before a slow one are bounded as well
+                if (pending.size() >= maxConcurrentFiles) {
+                    failedFiles += write(pending.removeFirst(), report);
+                }
+                pending.addLast(executor.submit(() -> processFile(file)));
+                // Write the files that are done, as long as all files before them are done as well
+                while (!pending.isEmpty() && pending.peekFirst().isDone()) {
+                    failedFiles += write(pending.removeFirst(), report);
+                }
+            }
+            while (!pending.isEmpty()) {
+                failedFiles += write(pending.removeFirst(), report);
+            }
+        } finally {
+            executor.shutdownNow();
+            // Only left when the report could not be written: remove the spilled failures of the finished files
+            for (Future<FileResult> future : pending) {
+                if (future.isDone() && !future.isCancelled()) {
+                    try {
+                        future.get().failedRecords.close();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (ExecutionException | IOException e) {
+                        // The temporary file is removed on exit
+                    }
+                }
+            }
+        }
+        report.finish();
+        return failedFiles;
+    }
+
+    private FileResult processFile(Path file) {
+        FileResult result = new FileResult(file.toString());
+        try (RecordReader reader = CustomerStatementProcessor.openReader(file.toString(), options)) {
+            if (reader == null) {
+                result.error = "Unsupported file type";
+                return result;
+            }
+            CustomerStatementProcessor.process(file.toString(), reader, result.failedRecords, options);
+        } catch (IOException | RuntimeException e) {
+            result.error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+        return result;
+    }
+
+    private int write(Future<FileResult> future, ReportWriter report) throws IOException {
+        FileResult result;
+        try {
+            result = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while processing statements", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to process a statement", e.getCause());
+        }
+        try (SpillingReportWriter failedRecords = result.failedRecords) {
+            // The failures found before an error are reported as well
+            if (failedRecords.getFailedCount() > 0) {
+                report.setSource(result.file);
+                failedRecords.replayTo(report);
+            }
+        }
+        if (result.error != null) {
+            errors.println("Error processing " + result.file + ": " + result.error);
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Creates a virtual thread per task executor when the runtime has virtual threads, a fixed thread pool otherwise.
+     * The number of concurrent tasks is bounded by the caller in both cases.
+     */
+    static ExecutorService newExecutor(int threads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(threads);
+        }
+    }
+
+    private static final class FileResult {
+        private final String file;
+        private final SpillingReportWriter failedRecords = new SpillingReportWriter();
+        private String error;
+
+        private FileResult(String file) {
+            this.file = file;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+// BitmapReferenceIndex.java
+package statementprocessor;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@link ReferenceIndex} that keeps one bit per possible reference.
+ * <p>
+ * The bitmap is split into pages of 65536 references (8 KB) that are only allocated once a reference in their
+ * range is added. For dense reference ranges this needs about one bit per reference, far less than any hash set;
+ * for sparse references each used page costs 8 KB, so the {@link IntHashReferenceIndex} is the better fit there.
+ * </p>
+ * A single index can be shared by the shards of a {@link ParallelValidator}: pages are allocated under a lock and
+ * published through an {@link AtomicReferenceArray}, so every thread sees a page once it has been allocated, and
+ * concurrent adds are safe as long as no two threads add references of the same 64-bit word at the same time.
+ */
+public class BitmapReferenceIndex implements ReferenceIndex {
+    private static final int PAGE_BITS = 16;
+    private static final int WORDS_PER_PAGE = (1 << PAGE_BITS) / Long.SIZE;
+
+    private final AtomicReferenceArray<long[]> pages = new AtomicReferenceArray<>(1 << (Integer.SIZE - PAGE_BITS));
+
+    @Override
+    public boolean add(int reference) {
+        int pageIndex = reference >>> PAGE_BITS;
+        long[] page = pages.getAcquire(pageIndex);
+        if (page == null) {
+            page = allocate(pageIndex);
+        }
+        // Shifting a long only uses the lowest six bits of the shift distance
+        int word = (reference & ((1 << PAGE_BITS) - 1)) >>> 6;
+        long bit = 1L << reference;
+        if ((page[word] & bit) != 0) {
+            return false;
+        }
+        page[word] |= bit;
+        return true;
+    }
+
+    private synchronized long[] allocate(int pageIndex) {
+        // Another thread may have allocated the page in the meantime
+        long[] page = pages.get(pageIndex);
+        if (page == null) {
+            page = new long[WORDS_PER_PAGE];
+            pages.setRelease(pageIndex, page);
+        }
+        return page;
+    }
+
+    @Override
+    public boolean contains(int reference) {
+        long[] page = pages.getAcquire(reference >>> PAGE_BITS);
+        return page != null && (page[(reference & ((1 << PAGE_BITS) - 1)) >>> 6] & (1L << reference)) != 0;
+    }
+
+    /**
+     * Counts the references in the allocated pages, so adds do not have to maintain a shared counter.
+     */
+    @Override
+    public synchronized long size() {
+        long size = 0;
+        for (int i = 0; i < pages.length(); i++) {
+            long[] page = pages.get(i);
+            for (int word = 0; page != null && word < page.length; word++) {
+                size += Long.bitCount(page[word]);
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,44 @@
+// ByteSequence.java
+package statementprocessor;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link CharSequence} view on the bytes of a {@link ByteBuffer}, one character per byte.
+ * <p>
+ * This lets the parsers in {@link FixedPoint} read ASCII numbers straight from a (memory-mapped) buffer, without
+ * decoding the bytes into a {@link String} first. The view is meant to be reused: {@link #wrap(ByteBuffer)} points
+ * it at another buffer, and the indices passed to {@link #charAt(int)} are absolute buffer positions.
+ * </p>
+ */
+final class ByteSequence implements CharSequence {
+    private ByteBuffer buffer;
+
+    void wrap(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (buffer.get(index) & 0xff);
+    }
+
+    @Override
+    public int length() {
+        return buffer.limit();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(length());
+        for (int i = 0; i < length(); i++) {
+            text.append(charAt(i));
+        }
+        return text.toString();
+    }
+}
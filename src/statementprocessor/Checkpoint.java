@@ -0,0 +1,105 @@
+// Checkpoint.java
+package statementprocessor;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * How far the processing of a statement file got, saved by the {@link CheckpointProcessor}.
+ * <p>
+ * The checkpoint is a small properties file. It is replaced atomically, so after a crash it always describes a
+ * consistent state: the byte offset to continue reading at, the number of transaction references in the reference
+ * log, and the length of the report up to that point.
+ * </p>
+ */
+class Checkpoint {
+    private static final String VERSION = "1";
+
+    final String statementFile;
+    final long offset;
+    final long recordCount;
+    final long failedCount;
+    final long referenceCount;
+    final long reportLength;
+    final boolean complete;
+
+    /**
+     * @param statementFile the absolute path of the statement file
+     * @param offset the byte offset in the statement file after the last processed record
+     * @param recordCount the number of records processed so far
+     * @param failedCount the number of failed records reported so far
+     * @param referenceCount the number of transaction references in the reference log
+     * @param reportLength the length of the report file in bytes, or -1 when the report is not written to a file
+     * @param complete whether the whole file was processed, as opposed to an interrupted run
+     */
+    Checkpoint(String statementFile, long offset, long recordCount, long failedCount, long referenceCount,
+               long reportLength, boolean complete) {
+        this.statementFile = statementFile;
+        this.offset = offset;
+        this.recordCount = recordCount;
+        this.failedCount = failedCount;
+        this.referenceCount = referenceCount;
+        this.reportLength = reportLength;
+        this.complete = complete;
+    }
+
+    /**
+     * Reads a checkpoint.
+     *
+     * @param file the checkpoint file
+     * @return the checkpoint, or {@code null} if the file does not exist
+     * @throws IOException if the file cannot be read or is not a valid checkpoint
+     */
+    static Checkpoint load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader in = Files.newBufferedReader(file)) {
+            properties.load(in);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (!VERSION.equals(properties.getProperty("version"))) {
+            throw new IOException(file + " is not a valid checkpoint");
+        }
+        try {
+            return new Checkpoint(
+                    properties.getProperty("statementFile"),
+                    Long.parseLong(properties.getProperty("offset")),
+                    Long.parseLong(properties.getProperty("recordCount")),
+                    Long.parseLong(properties.getProperty("failedCount")),
+                    Long.parseLong(properties.getProperty("referenceCount")),
+                    Long.parseLong(properties.getProperty("reportLength")),
+                    Boolean.parseBoolean(properties.getProperty("complete")));
+        } catch (NumberFormatException e) {
+            throw new IOException(file + " is not a valid checkpoint", e);
+        }
+    }
+
+    /**
+     * Writes the checkpoint to a temporary file and moves it over the given file, so the file is never half written.
+     *
+     * @param file the checkpoint file
+     * @throws IOException if the checkpoint cannot be written
+     */
+    void save(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("version", VERSION);
+        properties.setProperty("statementFile", statementFile);
+        properties.setProperty("offset", Long.toString(offset));
+        properties.setProperty("recordCount", Long.toString(recordCount));
+        properties.setProperty("failedCount", Long.toString(failedCount));
+        properties.setProperty("referenceCount", Long.toString(referenceCount));
+        properties.setProperty("reportLength", Long.toString(reportLength));
+        properties.setProperty("complete", Boolean.toString(complete));
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(temporary)) {
+            properties.store(out, "Customer statement processor checkpoint");
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
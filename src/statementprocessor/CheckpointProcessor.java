@@ -0,0 +1,239 @@
+// CheckpointProcessor.java
+package statementprocessor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Processes a CSV statement file with periodic {@link Checkpoint}s, so a run that fails partway can be resumed
+ * instead of processing the whole file again.
+ * <p>
+ * Every {@code interval} records (and when a record cannot be parsed) the state of the run is saved: the byte offset
+ * in the statement file, the transaction references seen so far and the length of the report file. The references
+ * are appended to a reference log next to the checkpoint file ({@code <checkpoint>.refs}, four bytes per
+ * reference), so a checkpoint only writes the references that are new since the previous one.
+ * </p>
+ * When the checkpoint of an interrupted run exists, the next run continues where it stopped: the report file is cut
+ * back to its length at the checkpoint and completed. When the checkpoint of a completed run exists, the next run
+ * processes only the records that were appended to the statement file since (tail mode), with a new report, while
+ * duplicates are still checked against all earlier records.
+ */
+class CheckpointProcessor {
+    /**
+     * The default number of records between two checkpoints.
+     */
+    static final long DEFAULT_INTERVAL = 1_000_000;
+
+    private final Path checkpointFile;
+    private final Path referenceLog;
+    private final long interval;
+    private final PrintStream messages;
+
+    /**
+     * @param checkpointFile the checkpoint file, created when it does not exist
+     * @param interval the number of records between two checkpoints
+     * @param messages the stream that progress messages are printed to
+     */
+    CheckpointProcessor(Path checkpointFile, long interval, PrintStream messages) {
+        this.checkpointFile = checkpointFile;
+        this.referenceLog = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".refs");
+        this.interval = interval;
+        this.messages = messages;
+    }
+
+    /**
+     * Processes the statement file from the last checkpoint on.
+     *
+     * @param filePath the path of the CSV statement file
+     * @param options the options used to validate the records and write the report
+     * @return the number of failed records in the report
+     * @throws IOException if an I/O error occurs, or the checkpoint belongs to another statement file
+     * @throws NumberFormatException if a record cannot be parsed; a checkpoint is saved just before that record
+     */
+    long process(String filePath, ProcessorOptions options) throws IOException, NumberFormatException {
+        String statementFile = Paths.get(filePath).toAbsolutePath().normalize().toString();
+        Checkpoint checkpoint = Checkpoint.load(checkpointFile);
+        if (checkpoint != null && !checkpoint.statementFile.equals(statementFile)) {
+            throw new IOException("The checkpoint " + checkpointFile + " belongs to " + checkpoint.statementFile);
+        }
+        boolean resume = checkpoint != null && !checkpoint.complete;
+        boolean resumeReport = resume && checkpoint.reportLength >= 0 && options.getReportFile() != null;
+        if (checkpoint != null) {
+            messages.println((resume ? "Resuming" : "Processing records appended") + " at byte " + checkpoint.offset
+                    + ", after " + checkpoint.recordCount + " records.");
+        }
+
+        try (JournalingReferenceIndex references = new JournalingReferenceIndex(options.newReferenceIndex(),
+                     referenceLog, checkpoint == null ? 0 : checkpoint.referenceCount);
+             SeekableCsvRecordReader reader = new SeekableCsvRecordReader(filePath, checkpoint == null ? 0 : checkpoint.offset);
+             ReportWriter reportFile = resumeReport
+                     ? options.openReportWriter(checkpoint.reportLength)
+                     : options.openReportWriter()) {
+            options.applyQuarantine(reader, filePath);
+            PipelineMetrics metrics = options.newPipelineMetrics();
+            metrics.start();
+            ReportWriter report = metrics.meter(reportFile);
+            if (resumeReport) {
+                report.resume(checkpoint.failedCount);
+            } else {
+                report.start();
+            }
+            Validator validator = new Validator(references);
+            long recordCount = checkpoint == null ? 0 : checkpoint.recordCount;
+            try {
+                boolean timed = metrics.isTimed();
+                long readStart = timed ? System.nanoTime() : 0;
+                Record record;
+                while ((record = reader.next()) != null) {
+                    if (timed) {
+                        metrics.addReadNanos(System.nanoTime() - readStart);
+                    }
+                    metrics.countRecord();
+                    FailureReason reason = validator.validate(record);
+                    if (reason != null) {
+                        report.report(record, reason);
+                    }
+                    if (++recordCount % interval == 0) {
+                        save(statementFile, reader, recordCount, references, report, options, false);
+                    }
+                    if (timed) {
+                        readStart = System.nanoTime();
+                    }
+                }
+                if (timed) {
+                    metrics.addReadNanos(System.nanoTime() - readStart);
+                }
+            } catch (IllegalArgumentException e) {
+                // The records before the invalid one have been processed, so the run can resume at the invalid one
+                // once it has been fixed
+                save(statementFile, reader, recordCount, references, report, options, false);
+                messages.println("Checkpoint saved at byte " + reader.position() + ", after " + recordCount
+                        + " records. Fix the record and run again to resume.");
+                throw e;
+            }
+            report.finish();
+            save(statementFile, reader, recordCount, references, report, options, true);
+            if (reader.hasIncompleteLine()) {
+                messages.println("Stopped at byte " + reader.position() + " before a line without a line break;"
+                        + " it is processed by the next run once it is complete.");
+            }
+            metrics.finish();
+            options.getMetrics().add(filePath, reader.position() - (checkpoint == null ? 0 : checkpoint.offset), metrics);
+            return report.getFailedCount();
+        }
+    }
+
+    private void save(String statementFile, SeekableCsvRecordReader reader, long recordCount,
+                      JournalingReferenceIndex references, ReportWriter report, ProcessorOptions options,
+                      boolean complete) throws IOException {
+        // The reference log and the report may get ahead of the checkpoint, but never behind: on resume they are
+        // cut back to their length at the checkpoint
+        long referenceCount = references.commit();
+        report.flush();
+        long reportLength = options.getReportFile() == null ? -1 : options.getReportFileLength();
+        new Checkpoint(statementFile, reader.position(), recordCount, report.getFailedCount(), referenceCount,
+                reportLength, complete).save(checkpointFile);
+    }
+
+    /**
+     * {@link ReferenceIndex} that remembers the references added since the last {@link #commit()}, and appends
+     * them to the reference log on commit.
+     */
+    private static final class JournalingReferenceIndex implements ReferenceIndex, Closeable {
+        private static final int LOG_BUFFER_SIZE = 1 << 20;
+
+        private final ReferenceIndex delegate;
+        private final FileChannel log;
+        private int[] pending = new int[1024];
+        private int pendingCount;
+        private long logged;
+
+        /**
+         * Opens the reference log and loads its first {@code referenceCount} references into the index.
+         */
+        JournalingReferenceIndex(ReferenceIndex delegate, Path logFile, long referenceCount) throws IOException {
+            this.delegate = delegate;
+            this.log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                if (log.size() < referenceCount * Integer.BYTES) {
+                    throw new IOException("The reference log " + logFile + " is shorter than its checkpoint");
+                }
+                log.truncate(referenceCount * Integer.BYTES);
+                ByteBuffer buffer = ByteBuffer.allocate(LOG_BUFFER_SIZE);
+                while (log.read(buffer) > 0) {
+                    buffer.flip();
+                    while (buffer.remaining() >= Integer.BYTES) {
+                        delegate.add(buffer.getInt());
+                    }
+                    buffer.compact();
+                }
+            } catch (IOException e) {
+                log.close();
+                throw e;
+            }
+            this.logged = referenceCount;
+        }
+
+        @Override
+        public boolean add(int reference) {
+            if (!delegate.add(reference)) {
+                return false;
+            }
+            if (pendingCount == pending.length) {
+                pending = Arrays.copyOf(pending, pendingCount * 2);
+            }
+            pending[pendingCount++] = reference;
+            return true;
+        }
+
+        @Override
+        public boolean contains(int reference) {
+            return delegate.contains(reference);
+        }
+
+        @Override
+        public long size() {
+            return delegate.size();
+        }
+
+        /**
+         * Appends the references added since the last commit to the log and forces them to disk.
+         *
+         * @return the number of references in the log
+         */
+        long commit() throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(LOG_BUFFER_SIZE);
+            for (int i = 0; i < pendingCount; i++) {
+                if (!buffer.hasRemaining()) {
+                    write(buffer);
+                }
+                buffer.putInt(pending[i]);
+            }
+            write(buffer);
+            log.force(false);
+            logged += pendingCount;
+            pendingCount = 0;
+            return logged;
+        }
+
+        private void write(ByteBuffer buffer) throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                log.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            log.close();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+// CollectingReportWriter.java
+package statementprocessor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link ReportWriter} that keeps the failed records in memory, so they can be written to another report writer
+ * later with {@link #replayTo(ReportWriter)}. Used when several statements are validated concurrently, but have to
+ * end up in one report in a deterministic order.
+ */
+public class CollectingReportWriter implements ReportWriter {
+    private final List<FailedRecord> failedRecords = new ArrayList<>();
+    private long resumedCount;
+
+    @Override
+    public void start() {
+    }
+
+    /**
+     * Continues counting after the failed records of an interrupted run, which are not collected again.
+     */
+    @Override
+    public void resume(long failedCount) {
+        this.resumedCount = failedCount;
+    }
+
+    @Override
+    public void report(Record record, FailureReason reason) {
+        failedRecords.add(new FailedRecord(record, reason));
+    }
+
+    /**
+     * Does nothing, the failed records are kept in memory.
+     */
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void finish() {
+    }
+
+    @Override
+    public long getFailedCount() {
+        return resumedCount + failedRecords.size();
+    }
+
+    /**
+     * @return the failed records collected so far, in the order they were reported
+     */
+    public List<FailedRecord> getFailedRecords() {
+        return failedRecords;
+    }
+
+    /**
+     * Reports all collected failed records to the given report writer, without starting or finishing its report.
+     *
+     * @param report the report writer to write the failed records to
+     * @throws IOException if the report cannot be written
+     */
+    public void replayTo(ReportWriter report) throws IOException {
+        for (FailedRecord failedRecord : failedRecords) {
+            report.report(failedRecord.getRecord(), failedRecord.getReason());
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,314 @@
+// ColumnarRecordReader.java
+package statementprocessor;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * {@link RecordCursor} over a columnar statement file ({@code .acol}), written by {@link ColumnarStatementWriter}.
+ * <p>
+ * The file stores every field of the records in its own column: the transaction references as {@code int}s, the
+ * amounts as {@code long} cents and the account numbers and descriptions as {@code int} ids into a dictionary of
+ * distinct strings. The whole file is memory-mapped, so validating a file is a sequential scan over four primitive
+ * arrays, without any parsing. Strings are only decoded from the mapped dictionary when a record is created, and a
+ * bounded cache keeps the strings decoded last by id, so repeated account numbers are decoded once.
+ * </p>
+ * The layout of the file, all numbers big-endian:
+ * <pre>
+ *   header      int magic ("ACOL"), int version, long row count, and the long offsets of the columns,
+ *               the dictionary and the exceptions, padded to {@value #HEADER_SIZE} bytes
+ *   columns     int[rows] references, long[rows] start balances, long[rows] mutations, long[rows] end balances,
+ *               int[rows] account number ids, int[rows] description ids; each starting at a multiple of 8 bytes
+ *   dictionary  int count, long[count + 1] offsets of the strings relative to the first string, UTF-8 strings
+ *   exceptions  int count, long[count] ascending rows whose amounts cannot be stored in cents, long[count + 1]
+ *               offsets of their amounts relative to the first one, and for every such row the start balance,
+ *               mutation and end balance as (int length, UTF-8 text)
+ * </pre>
+ * Amounts in cents are restored with two decimals; amounts that have more decimals or digits than fit in cents are
+ * stored as text in the exceptions and restored exactly. The exceptions are a side column keyed by row, which is
+ * mapped like the other columns, so a file with many of them does not end up on the heap.
+ */
+public class ColumnarRecordReader implements RecordCursor {
+    static final int MAGIC = 0x41434F4C; // "ACOL"
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 128;
+    static final int COLUMN_COUNT = 6;
+    static final int REFERENCES = 0;
+    static final int START_BALANCES = 1;
+    static final int MUTATIONS = 2;
+    static final int END_BALANCES = 3;
+    static final int ACCOUNT_NUMBERS = 4;
+    static final int DESCRIPTIONS = 5;
+    static final int[] COLUMN_WIDTHS = {Integer.BYTES, Long.BYTES, Long.BYTES, Long.BYTES, Integer.BYTES, Integer.BYTES};
+
+    /**
+     * The number of rows of a column that are mapped at once: a column of {@code long}s is mapped in windows of 1 GB.
+     * The strings and the text of the exceptions are mapped in windows of the same size.
+     */
+    static final int DEFAULT_WINDOW_ROWS = 1 << 27;
+
+    /**
+     * The maximum number of decoded dictionary strings that are kept.
+     */
+    private static final int STRING_CACHE_SIZE = 1 << 14;
+
+    private final FileChannel channel;
+    private final long rows;
+    private final int windowShift;
+    private final long windowMask;
+    private final MappedByteBuffer[][] columns = new MappedByteBuffer[COLUMN_COUNT][];
+    private final int dictionarySize;
+    private final MappedByteBuffer[] stringOffsets;
+    private final MappedByteBuffer[] strings;
+    private final int[] cachedIds;
+    private final String[] cachedStrings;
+    private final int exceptionCount;
+    private final MappedByteBuffer[] exceptionRows;
+    private final MappedByteBuffer[] exceptionOffsets;
+    private final MappedByteBuffer[] exceptionText;
+
+    private long row = -1;
+    private int window;
+    private int index = -1;
+    private int nextException;
+
+    /**
+     * Opens the columnar statement file at the given path.
+     *
+     * @param filePath the file path of the columnar file
+     * @throws IOException if the file cannot be opened or mapped
+     * @throws MalformedStatementException if the file is not a columnar statement file
+     */
+    public ColumnarRecordReader(String filePath) throws IOException {
+        this(filePath, DEFAULT_WINDOW_ROWS);
+    }
+
+    ColumnarRecordReader(String filePath, int windowRows) throws IOException {
+        if (Integer.bitCount(windowRows) != 1) {
+            throw new IllegalArgumentException("The window must be a power of two rows, but was " + windowRows);
+        }
+        this.channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = read(0, HEADER_SIZE);
+            if (header.getInt() != MAGIC) {
+                throw new MalformedStatementException(filePath + " is not a columnar statement file");
+            }
+            if (header.getInt() != VERSION) {
+                throw new MalformedStatementException(filePath + " was written by another version, convert it again");
+            }
+            this.rows = header.getLong();
+            this.windowShift = Integer.numberOfTrailingZeros(windowRows);
+            this.windowMask = windowRows - 1;
+            for (int column = 0; column < COLUMN_COUNT; column++) {
+                columns[column] = map(header.getLong(), rows, COLUMN_WIDTHS[column], windowShift);
+            }
+
+            long dictionary = header.getLong();
+            this.dictionarySize = count(read(dictionary, Integer.BYTES).getInt());
+            this.stringOffsets = map(dictionary + Integer.BYTES, dictionarySize + 1L, Long.BYTES, windowShift);
+            this.strings = map(dictionary + Integer.BYTES + (dictionarySize + 1L) * Long.BYTES,
+                    longAt(stringOffsets, dictionarySize), 1, windowShift + 3);
+            int cacheSize = Integer.highestOneBit(Math.min(STRING_CACHE_SIZE, Math.max(1, dictionarySize)) * 2 - 1);
+            this.cachedIds = new int[cacheSize];
+            this.cachedStrings = new String[cacheSize];
+            Arrays.fill(cachedIds, -1);
+
+            long exceptions = header.getLong();
+            this.exceptionCount = count(read(exceptions, Integer.BYTES).getInt());
+            this.exceptionRows = map(exceptions + Integer.BYTES, exceptionCount, Long.BYTES, windowShift);
+            long offsets = exceptions + Integer.BYTES + (long) exceptionCount * Long.BYTES;
+            this.exceptionOffsets = map(offsets, exceptionCount + 1L, Long.BYTES, windowShift);
+            this.exceptionText = map(offsets + (exceptionCount + 1L) * Long.BYTES,
+                    longAt(exceptionOffsets, exceptionCount), 1, windowShift + 3);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static int count(int count) throws MalformedStatementException {
+        if (count < 0) {
+            throw new MalformedStatementException("Invalid count " + count + " in the columnar statement file");
+        }
+        return count;
+    }
+
+    /**
+     * Maps a section of the file in windows of {@code 1 << windowShift} elements.
+     */
+    private MappedByteBuffer[] map(long offset, long count, int width, int windowShift) throws IOException {
+        if (offset < 0 || count < 0 || offset + count * width > channel.size()) {
+            throw new MalformedStatementException("The columnar statement file is truncated");
+        }
+        long windowElements = 1L << windowShift;
+        MappedByteBuffer[] windows = new MappedByteBuffer[(int) ((count + windowElements - 1) >>> windowShift)];
+        for (int i = 0; i < windows.length; i++) {
+            long windowLength = Math.min(windowElements, count - i * windowElements) * width;
+            windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + i * windowElements * width, windowLength);
+        }
+        return windows;
+    }
+
+    private long longAt(MappedByteBuffer[] windows, long element) {
+        return windows[(int) (element >>> windowShift)].getLong((int) (element & windowMask) * Long.BYTES);
+    }
+
+    /**
+     * Copies bytes from a section that is mapped in byte windows, see {@link #map}; the bytes may span windows.
+     */
+    private byte[] bytesAt(MappedByteBuffer[] windows, long position, int length) {
+        int shift = windowShift + 3;
+        long mask = (1L << shift) - 1;
+        byte[] bytes = new byte[length];
+        for (int copied = 0; copied < length; ) {
+            long from = position + copied;
+            MappedByteBuffer window = windows[(int) (from >>> shift)];
+            int offset = (int) (from & mask);
+            int count = Math.min(length - copied, window.limit() - offset);
+            window.get(offset, bytes, copied, count);
+            copied += count;
+        }
+        return bytes;
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new MalformedStatementException("The columnar statement file is truncated");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @return the number of records in the file
+     */
+    public long size() {
+        return rows;
+    }
+
+    @Override
+    public boolean advance() {
+        if (row + 1 >= rows) {
+            row = rows;
+            return false;
+        }
+        row++;
+        window = (int) (row >>> windowShift);
+        index = (int) (row & windowMask);
+        return true;
+    }
+
+    @Override
+    public int reference() {
+        return columns[REFERENCES][window].getInt(index * Integer.BYTES);
+    }
+
+    @Override
+    public long startBalanceCents() {
+        return columns[START_BALANCES][window].getLong(index * Long.BYTES);
+    }
+
+    @Override
+    public long mutationCents() {
+        return columns[MUTATIONS][window].getLong(index * Long.BYTES);
+    }
+
+    @Override
+    public long endBalanceCents() {
+        return columns[END_BALANCES][window].getLong(index * Long.BYTES);
+    }
+
+    /**
+     * @return the account number of the current record
+     * @throws IOException if the dictionary cannot be read
+     */
+    public String accountNumber() throws IOException {
+        return string(columns[ACCOUNT_NUMBERS][window].getInt(index * Integer.BYTES));
+    }
+
+    /**
+     * @return the description of the current record
+     * @throws IOException if the dictionary cannot be read
+     */
+    public String description() throws IOException {
+        return string(columns[DESCRIPTIONS][window].getInt(index * Integer.BYTES));
+    }
+
+    private String string(int id) throws IOException {
+        if (id < 0 || id >= dictionarySize) {
+            throw new MalformedStatementException("Invalid dictionary id " + id + " in row " + row);
+        }
+        int slot = IntHashReferenceIndex.mix(id) & (cachedIds.length - 1);
+        if (cachedIds[slot] == id) {
+            return cachedStrings[slot];
+        }
+        long start = longAt(stringOffsets, id);
+        long end = longAt(stringOffsets, id + 1L);
+        String value = new String(bytesAt(strings, start, (int) (end - start)), StandardCharsets.UTF_8);
+        cachedIds[slot] = id;
+        cachedStrings[slot] = value;
+        return value;
+    }
+
+    /**
+     * @return the amounts of the current record as text, when they cannot be stored in cents, or {@code null}
+     */
+    private String[] exceptionAmounts() {
+        // The rows are visited in ascending order, and so are the rows of the exceptions
+        while (nextException < exceptionCount && longAt(exceptionRows, nextException) < row) {
+            nextException++;
+        }
+        if (nextException == exceptionCount || longAt(exceptionRows, nextException) != row) {
+            return null;
+        }
+        long start = longAt(exceptionOffsets, nextException);
+        long end = longAt(exceptionOffsets, nextException + 1L);
+        ByteBuffer text = ByteBuffer.wrap(bytesAt(exceptionText, start, (int) (end - start)));
+        String[] amounts = new String[3];
+        for (int i = 0; i < amounts.length; i++) {
+            byte[] amount = new byte[text.getInt()];
+            text.get(amount);
+            amounts[i] = new String(amount, StandardCharsets.UTF_8);
+        }
+        return amounts;
+    }
+
+    @Override
+    public Record toRecord() throws IOException {
+        String[] amounts = exceptionAmounts();
+        if (amounts != null) {
+            return new Record(reference(), accountNumber(), description(),
+                    new BigDecimal(amounts[0]), amounts[1], new BigDecimal(amounts[2]));
+        }
+        long mutation = mutationCents();
+        return new Record(reference(), accountNumber(), description(),
+                BigDecimal.valueOf(startBalanceCents(), FixedPoint.SCALE),
+                (mutation < 0 ? "-" : "+") + BigDecimal.valueOf(Math.abs(mutation), FixedPoint.SCALE).toPlainString(),
+                BigDecimal.valueOf(endBalanceCents(), FixedPoint.SCALE));
+    }
+
+    @Override
+    public Record next() throws IOException {
+        return advance() ? toRecord() : null;
+    }
+
+    @Override
+    public void setQuarantine(Quarantine quarantine) {
+        // Every row was parsed when the file was converted, so there is nothing to quarantine
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
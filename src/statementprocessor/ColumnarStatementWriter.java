@@ -0,0 +1,248 @@
+// ColumnarStatementWriter.java
+package statementprocessor;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes records to a columnar statement file ({@code .acol}), which {@link ColumnarRecordReader} can validate
+ * without parsing. See {@link ColumnarRecordReader} for the layout of the file.
+ * <p>
+ * Records are written one at a time: every column, and the side columns of the amounts that do not fit in cents, is
+ * streamed to a temporary file next to the target, and the files are concatenated into the target when the writer is
+ * closed. Only the dictionary of distinct account numbers and descriptions is kept in memory.
+ * </p>
+ */
+public class ColumnarStatementWriter implements AutoCloseable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int EXCEPTION_ROWS = ColumnarRecordReader.COLUMN_COUNT;
+    private static final int EXCEPTION_OFFSETS = EXCEPTION_ROWS + 1;
+    private static final int EXCEPTION_TEXT = EXCEPTION_OFFSETS + 1;
+
+    private final Path target;
+    private final Path[] columnFiles = new Path[EXCEPTION_TEXT + 1];
+    private final DataOutputStream[] columns = new DataOutputStream[EXCEPTION_TEXT + 1];
+    private final Map<String, Integer> dictionaryIds = new HashMap<>();
+    private final List<byte[]> dictionary = new ArrayList<>();
+    private long rows;
+    private int exceptionCount;
+    private long exceptionTextLength;
+    private boolean closed;
+
+    /**
+     * Creates a writer for the columnar statement file at the given path.
+     *
+     * @param target the file to write, replaced when it exists
+     * @throws IOException if the temporary column files cannot be created
+     */
+    public ColumnarStatementWriter(Path target) throws IOException {
+        this.target = target;
+        Path directory = target.toAbsolutePath().getParent();
+        try {
+            for (int column = 0; column < columns.length; column++) {
+                columnFiles[column] = Files.createTempFile(directory, target.getFileName() + ".", ".column");
+                columns[column] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(columnFiles[column]), BUFFER_SIZE));
+            }
+            columns[EXCEPTION_OFFSETS].writeLong(0);
+        } catch (IOException e) {
+            deleteColumnFiles();
+            throw e;
+        }
+    }
+
+    /**
+     * Converts all records of the reader into a columnar statement file.
+     *
+     * @param reader the source of the records
+     * @param target the columnar file to write
+     * @return the number of records written
+     * @throws IOException if the records cannot be read or the file cannot be written
+     * @throws NumberFormatException if there is an error parsing numerical values of the records
+     */
+    public static long convert(RecordReader reader, Path target) throws IOException, NumberFormatException {
+        ColumnarStatementWriter writer = new ColumnarStatementWriter(target);
+        try {
+            Record record;
+            while ((record = reader.next()) != null) {
+                writer.write(record);
+            }
+        } catch (IOException | RuntimeException e) {
+            writer.discard();
+            throw e;
+        }
+        writer.close();
+        return writer.rows;
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @param record the record
+     * @throws IOException if the record cannot be written
+     */
+    public void write(Record record) throws IOException {
+        long mutation = record.getMutationAmountCents();
+        if (mutation != FixedPoint.NOT_REPRESENTABLE && record.getMutationType() == '-') {
+            mutation = -mutation;
+        }
+        if (!record.hasFixedPointAmounts()) {
+            writeException(record);
+        }
+        columns[ColumnarRecordReader.REFERENCES].writeInt(record.getTransactionReference());
+        columns[ColumnarRecordReader.START_BALANCES].writeLong(record.getStartBalanceCents());
+        columns[ColumnarRecordReader.MUTATIONS].writeLong(mutation);
+        columns[ColumnarRecordReader.END_BALANCES].writeLong(record.getEndBalanceCents());
+        columns[ColumnarRecordReader.ACCOUNT_NUMBERS].writeInt(dictionaryId(record.getAccountNumber()));
+        columns[ColumnarRecordReader.DESCRIPTIONS].writeInt(dictionaryId(record.getDescription()));
+        rows++;
+    }
+
+    /**
+     * Appends the amounts of the current row as text to the side columns of the exceptions.
+     */
+    private void writeException(Record record) throws IOException {
+        if (exceptionCount == Integer.MAX_VALUE) {
+            throw new IOException("Too many amounts that do not fit in cents for " + target);
+        }
+        exceptionCount++;
+        columns[EXCEPTION_ROWS].writeLong(rows);
+        DataOutputStream text = columns[EXCEPTION_TEXT];
+        int before = text.size();
+        writeText(text, record.getStartBalance().toString());
+        writeText(text, record.getMutationType() + record.getMutationAmount().toPlainString());
+        writeText(text, record.getEndBalance().toString());
+        // The size of a DataOutputStream wraps at Integer.MAX_VALUE, the text of one row never comes close
+        exceptionTextLength += text.size() - before;
+        columns[EXCEPTION_OFFSETS].writeLong(exceptionTextLength);
+    }
+
+    private int dictionaryId(String value) {
+        Integer id = dictionaryIds.get(value);
+        if (id == null) {
+            id = dictionary.size();
+            dictionaryIds.put(value, id);
+            dictionary.add(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return id;
+    }
+
+    /**
+     * Writes the columnar file and removes the temporary column files.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(ColumnarRecordReader.HEADER_SIZE);
+            header.putInt(ColumnarRecordReader.MAGIC).putInt(ColumnarRecordReader.VERSION).putLong(rows);
+
+            long position = ColumnarRecordReader.HEADER_SIZE;
+            for (int column = 0; column < ColumnarRecordReader.COLUMN_COUNT; column++) {
+                // Align every column, so all reads from the mapped columns are aligned
+                position = (position + Long.BYTES - 1) & -Long.BYTES;
+                header.putLong(position);
+                // A transfer past the end of the file writes nothing, so fill the gap first
+                out.write(ByteBuffer.allocate((int) (position - out.size())), out.size());
+                position = append(out, column, position);
+            }
+
+            header.putLong(position);
+            out.position(position);
+            DataOutputStream tail = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(out), BUFFER_SIZE));
+            writeDictionary(tail);
+            tail.flush();
+            header.putLong(out.position());
+            tail.writeInt(exceptionCount);
+            tail.flush();
+            position = out.position();
+            for (int column = EXCEPTION_ROWS; column <= EXCEPTION_TEXT; column++) {
+                position = append(out, column, position);
+            }
+
+            header.clear();
+            while (header.hasRemaining()) {
+                out.write(header, header.position());
+            }
+        } finally {
+            deleteColumnFiles();
+        }
+    }
+
+    private void writeDictionary(DataOutputStream out) throws IOException {
+        out.writeInt(dictionary.size());
+        long offset = 0;
+        out.writeLong(offset);
+        for (byte[] value : dictionary) {
+            offset += value.length;
+            out.writeLong(offset);
+        }
+        for (byte[] value : dictionary) {
+            out.write(value);
+        }
+    }
+
+    /**
+     * Copies a temporary column file into the target at the given position.
+     *
+     * @return the position after the column
+     */
+    private long append(FileChannel out, int column, long position) throws IOException {
+        columns[column].close();
+        try (FileChannel in = FileChannel.open(columnFiles[column], StandardOpenOption.READ)) {
+            long size = in.size();
+            for (long copied = 0; copied < size; ) {
+                long transferred = out.transferFrom(in, position + copied, size - copied);
+                if (transferred == 0) {
+                    throw new IOException("Could not copy column " + column + " to " + target);
+                }
+                copied += transferred;
+            }
+            return position + size;
+        }
+    }
+
+    private static void writeText(DataOutputStream out, String value) throws IOException {
+        byte[] text = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(text.length);
+        out.write(text);
+    }
+
+    /**
+     * Stops writing without creating the columnar file, e.g. because the input turned out to be invalid.
+     *
+     * @throws IOException if the temporary column files cannot be removed
+     */
+    public void discard() throws IOException {
+        closed = true;
+        deleteColumnFiles();
+    }
+
+    private void deleteColumnFiles() throws IOException {
+        for (int column = 0; column < columns.length; column++) {
+            if (columns[column] != null) {
+                columns[column].close();
+            }
+            if (columnFiles[column] != null) {
+                Files.deleteIfExists(columnFiles[column]);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+// CsvRecordReader.java
+package statementprocessor;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streaming {@link RecordReader} for CSV statement files.
+ * <p>
+ * The first line of the input is treated as the header and skipped. Every following line is parsed with
+ * {@link FileReaderUtil#parseCSVLine(String)}; lines that do not have the expected six columns are skipped, or
+ * quarantined by line number when reading leniently.
+ * </p>
+ */
+public class CsvRecordReader implements RecordReader {
+    private final BufferedReader reader;
+    private boolean headerSkipped;
+    private long lineNumber;
+    private Quarantine quarantine;
+
+    /**
+     * Opens the CSV file at the given path for streaming.
+     *
+     * @param filePath the file path of the CSV file to read
+     * @throws IOException if the file cannot be opened
+     */
+    public CsvRecordReader(String filePath) throws IOException {
+        this(new FileReader(filePath));
+    }
+
+    /**
+     * Streams records from the given input. The reader is closed when this reader is closed.
+     *
+     * @param input the CSV input
+     */
+    public CsvRecordReader(Reader input) {
+        this.reader = new BufferedReader(input);
+    }
+
+    @Override
+    public Record next() throws IOException, NumberFormatException {
+        if (!headerSkipped) {
+            headerSkipped = true;
+            lineNumber++;
+            if (reader.readLine() == null) {
+                return null;
+            }
+        }
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            Record record = FileReaderUtil.parseCSVLine(line, quarantine, "line", lineNumber);
+            if (record != null) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void setQuarantine(Quarantine quarantine) {
+        this.quarantine = quarantine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
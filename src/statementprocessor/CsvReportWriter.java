@@ -0,0 +1,51 @@
+// CsvReportWriter.java
+package statementprocessor;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * {@link ReportWriter} that writes the failed records as CSV, with a header row and the columns
+ * Reference, Account Number, Description, Reason, File. The reason is the name of the {@link FailureReason}, the file
+ * is the statement file set with {@link #setSource(String)} (empty when not set).
+ */
+public class CsvReportWriter extends AbstractReportWriter {
+    /**
+     * @param out the writer to write the report to, closed when this report writer is closed
+     */
+    public CsvReportWriter(Writer out) {
+        super(out);
+    }
+
+    @Override
+    protected void writeHeader() throws IOException {
+        out.write("Reference,Account Number,Description,Reason,File\n");
+    }
+
+    @Override
+    protected void writeRecord(Record record, FailureReason reason) throws IOException {
+        out.write(Integer.toString(record.getTransactionReference()));
+        out.write(',');
+        writeField(record.getAccountNumber());
+        out.write(',');
+        writeField(record.getDescription());
+        out.write(',');
+        out.write(reason == null ? "" : reason.name());
+        out.write(',');
+        writeField(getSource() == null ? "" : getSource());
+        out.write('\n');
+    }
+
+    /**
+     * Writes a field, quoted when it contains a separator, a quote or a line break.
+     */
+    private void writeField(String value) throws IOException {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+}
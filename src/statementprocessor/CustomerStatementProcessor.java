@@ -3,9 +3,17 @@ package statementprocessor;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.nio.file.AccessDeniedException;
-import java.util.ArrayList;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 
 /**
  * This class is responsible for processing customer statement files.
@@ -13,7 +21,10 @@ import java.util.Scanner;
  * and generating a report for failed records.
  *
  * The main method determines the file type (CSV or XML) based on the file extension,
- * reads the data from the provided file, validates the records, and generates a report.
+ * streams the records from the provided file through the validator and reports failed records as they are found.
+ * When a directory or glob pattern is given instead of a file, all matching files are processed concurrently
+ * into a single report, see {@link BatchProcessor}. With {@code --serve} statements are validated over HTTP by a
+ * long-running {@link StatementServer} instead.
  */
 public class CustomerStatementProcessor {
     /**
@@ -22,38 +33,116 @@ public class CustomerStatementProcessor {
      * determines the file type, processes the file, validates the records,
      * and generates a report for failed records.
      *
-     * @param args command line arguments. The optional first argument should be the file path
-     *             (either a CSV or XML file).
+     * @param args command line arguments. The optional argument should be the file path
+     *             (either a CSV or XML file), optionally preceded by options, see {@link ProcessorOptions}.
      */
+    @SuppressWarnings("try") // the reference store and quarantine are used through the options
     public static void main(String[] args) {
-        String filePath;
-        if (args.length != 1) {
+        ProcessorOptions options;
+        try {
+            options = ProcessorOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            return;
+        }
+        if (options.getFilePath() == null && options.getServePort() < 0) {
             Scanner scanner = new Scanner(System.in);
             System.out.print("Enter the path of the CSV or XML file you want to process: ");
-            filePath = scanner.nextLine();
-        } else {
-            filePath = args[0];
+            options.setFilePath(scanner.nextLine());
         }
 
-        try {
-            ArrayList<Record> records;
-
-            if (filePath.endsWith(".csv")) {
-                records = FileReaderUtil.readCSV(filePath);
-            } else if (filePath.endsWith(".xml")) {
-                records = FileReaderUtil.readXML(filePath);
+        try (PersistentReferenceIndex referenceStore = options.openReferenceStore();
+             QuarantineWriter quarantine = options.openQuarantine()) {
+            if (options.getServePort() >= 0) {
+                serve(options);
+            } else if (BatchProcessor.isBatch(options.getFilePath())) {
+                processBatch(options);
             } else {
-                System.out.println("Unsupported file type. Please provide a CSV or XML file.");
-                return;
+                processFile(options);
             }
+            if (quarantine != null && quarantine.getCount() > 0) {
+                System.err.println("Quarantined " + quarantine.getCount() + " rows that could not be parsed.");
+            }
+        } catch (IOException e) {
+            System.out.println("Error: An I/O error occurred in the transaction reference store or quarantine. " + e.getMessage());
+        }
+        reportMetrics(options);
+    }
 
-            ArrayList<Record> failedRecords = Validator.validateRecords(records);
-            ReportGenerator.generateReport(failedRecords);
+    /**
+     * Prints the metrics of the run and writes them to the metrics file, when asked for with {@code --metrics}.
+     */
+    private static void reportMetrics(ProcessorOptions options) {
+        if (!options.isMetricsEnabled()) {
+            return;
+        }
+        RunMetrics metrics = options.getMetrics();
+        metrics.finish();
+        metrics.printSummary(System.err);
+        if (options.getMetricsFile() != null) {
+            try {
+                metrics.writePrometheus(Paths.get(options.getMetricsFile()));
+            } catch (IOException e) {
+                System.out.println("Error: The metrics could not be written to " + options.getMetricsFile() + ": " + e.getMessage());
+            }
+        }
+    }
 
+    /**
+     * Runs the {@link StatementServer} on the loopback address until the JVM is shut down, e.g. with Ctrl+C.
+     */
+    private static void serve(ProcessorOptions options) throws IOException {
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), options.getServePort());
+        StatementServer server = new StatementServer(options, address, Runtime.getRuntime().availableProcessors());
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            stopped.countDown();
+        }));
+        server.start();
+        System.err.println("Validating statements posted to http://" + address.getHostString() + ":" + server.getPort() + "/validate");
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Processes a single statement file.
+     */
+    private static void processFile(ProcessorOptions options) {
+        try {
+            if (options.getCheckpointFile() != null) {
+                if (!options.getFilePath().endsWith(".csv")) {
+                    System.out.println("Checkpoints are only supported for CSV files.");
+                    return;
+                }
+                new CheckpointProcessor(Paths.get(options.getCheckpointFile()), options.getCheckpointInterval(), System.err)
+                        .process(options.getFilePath(), options);
+                return;
+            }
+            // Records are validated and reported while the file is being read, so the file is never held in memory
+            try (RecordReader reader = openReader(options.getFilePath(), options)) {
+                if (reader == null) {
+                    System.out.println("Unsupported file type. Please provide a CSV, XML or columnar (.acol) file.");
+                    return;
+                }
+                if (options.getConvertFile() != null) {
+                    long records = ColumnarStatementWriter.convert(reader, Paths.get(options.getConvertFile()));
+                    System.err.println("Converted " + records + " records to " + options.getConvertFile());
+                    return;
+                }
+                try (ReportWriter report = options.openReportWriter()) {
+                    process(options.getFilePath(), reader, report, options);
+                }
+            }
         } catch (FileNotFoundException e) {
             System.out.println("Error: The file could not be found at the specified path. Please check the file path and try again.");
         } catch (AccessDeniedException e) {
             System.out.println("Error: You do not have permission to access the file at the specified path. Please check your file permissions or try running the program with higher privileges.");
+        } catch (MalformedStatementException e) {
+            System.out.println("Error: The file is not a valid statement file. " + e.getMessage());
         } catch (IOException e) {
             System.out.println("Error: An unexpected I/O error occurred while reading the file. Please try again.");
         } catch (NumberFormatException e) {
@@ -63,4 +152,102 @@ public class CustomerStatementProcessor {
             System.out.println("Error processing statements: " + e.getMessage());
         }
     }
+
+    /**
+     * Processes all statement files in a directory, or matching a glob pattern, into a single report.
+     */
+    private static void processBatch(ProcessorOptions options) {
+        if (options.getConvertFile() != null) {
+            System.out.println("Error: Option --convert converts a single file, not a directory or glob pattern.");
+            return;
+        }
+        if (options.getCheckpointFile() != null) {
+            System.out.println("Error: Option --checkpoint processes a single CSV file, not a directory or glob pattern.");
+            return;
+        }
+        try {
+            List<Path> files = BatchProcessor.findFiles(options.getFilePath());
+            if (files.isEmpty()) {
+                System.out.println("Error: No CSV or XML files found at " + options.getFilePath());
+                return;
+            }
+            int failedFiles;
+            try (ReportWriter report = options.openReportWriter()) {
+                failedFiles = new BatchProcessor(options, options.getMaxConcurrentFiles(), System.err).process(files, report);
+            }
+            System.err.println("Processed " + (files.size() - failedFiles) + " of " + files.size() + " statement files.");
+        } catch (IOException e) {
+            System.out.println("Error: An unexpected I/O error occurred while processing the files: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Opens a streaming reader for the file, based on its extension.
+     *
+     * @param filePath the path of the CSV or XML file
+     * @param options the options that tell how the file should be read
+     * @return the reader, or {@code null} if the file type is not supported
+     * @throws IOException if the file cannot be opened
+     */
+    static RecordReader openReader(String filePath, ProcessorOptions options) throws IOException {
+        RecordReader reader;
+        if (filePath.endsWith(".csv")) {
+            if (options.getParallelism() > 0) {
+                reader = FileReaderUtil.openCSVParallel(filePath, options.getParallelism());
+            } else if (options.isMemoryMapped()) {
+                reader = FileReaderUtil.openCSVMapped(filePath);
+            } else {
+                reader = FileReaderUtil.openCSV(filePath);
+            }
+        } else if (filePath.endsWith(".xml")) {
+            reader = FileReaderUtil.openXML(filePath);
+        } else if (filePath.endsWith(".acol")) {
+            reader = FileReaderUtil.openColumnar(filePath);
+        } else {
+            return null;
+        }
+        options.applyQuarantine(reader, filePath);
+        return reader;
+    }
+
+    /**
+     * Runs the records of the reader through the validator selected by the options, and adds the metrics of the
+     * pipeline to the metrics of the run.
+     */
+    static void process(String filePath, RecordReader reader, ReportWriter report, ProcessorOptions options) throws IOException {
+        process(filePath, Files.size(Paths.get(filePath)), reader, report, options, null);
+    }
+
+    /**
+     * Runs the records of the reader through the validator selected by the options, for a statement that is not
+     * read from a file, e.g. one submitted to the {@link StatementServer}.
+     *
+     * @param source the name of the statement in the metrics
+     * @param bytes the size of the statement in bytes
+     * @param validationPool the pool shared by the {@link ParallelValidator}s of concurrent statements, or
+     *                       {@code null} to give the validator of this statement its own pool
+     * @return the number of records read from the statement
+     */
+    static long process(String source, long bytes, RecordReader reader, ReportWriter report, ProcessorOptions options,
+                        ForkJoinPool validationPool) throws IOException {
+        PipelineMetrics metrics = options.newPipelineMetrics();
+        // Only a statement that has been processed completely leaves its references in the store
+        try (PersistentReferenceIndex.Transaction references = options.beginReferences()) {
+            if (options.getValidationParallelism() > 0) {
+                Supplier<ReferenceIndex> indexes = options.newShardReferenceIndexes(options.getValidationParallelism(), references);
+                try (ParallelValidator validator = validationPool != null
+                        ? new ParallelValidator(validationPool, indexes, options.isAccountChains())
+                        : new ParallelValidator(options.getValidationParallelism(), indexes, options.isAccountChains())) {
+                    StatementPipeline.process(reader, validator, report, metrics);
+                }
+            } else {
+                StatementPipeline.process(reader, options.newValidator(references), report, metrics);
+            }
+            if (references != null) {
+                references.commit();
+            }
+        }
+        options.getMetrics().add(source, bytes, metrics);
+        return metrics.getRecords();
+    }
 }
@@ -0,0 +1,18 @@
+// FailedRecord.java
+package statementprocessor;
+
+/**
+ * A {@link Record} that failed validation, together with the reason why it failed.
+ */
+public class FailedRecord {
+    private final Record record;
+    private final FailureReason reason;
+
+    public FailedRecord(Record record, FailureReason reason) {
+        this.record = record;
+        this.reason = reason;
+    }
+
+    public Record getRecord() { return record; }
+    public FailureReason getReason() { return reason; }
+}
@@ -0,0 +1,24 @@
+// FailureReason.java
+package statementprocessor;
+
+/**
+ * The reasons why a {@link Record} can fail validation.
+ */
+public enum FailureReason {
+    DUPLICATE_REFERENCE("Duplicate transaction reference"),
+    BALANCE_MISMATCH("End balance does not match start balance and mutation"),
+    BROKEN_ACCOUNT_CHAIN("Start balance does not match the previous end balance of the account");
+
+    private final String description;
+
+    FailureReason(String description) {
+        this.description = description;
+    }
+
+    /**
+     * @return a human readable description of the reason
+     */
+    public String getDescription() {
+        return description;
+    }
+}
@@ -1,18 +1,6 @@
 // FileReaderUtil.java
 package statementprocessor;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
@@ -34,6 +22,7 @@ public class FileReaderUtil {
      * transactionReference, accountNumber, description, startBalance, mutation, and endBalance.
      * <p>
      * The method skips the header row and processes the remaining rows.
+     * Use {@link #openCSV(String)} directly to process records without collecting them into a list.
      * </p>
      *
      * @param filePath the file path of the CSV file to read
@@ -42,33 +31,115 @@ public class FileReaderUtil {
      * @throws NumberFormatException if there is an error parsing numerical values from the CSV
      */
     public static ArrayList<Record> readCSV(String filePath) throws IOException, NumberFormatException {
+        try (RecordReader reader = openCSV(filePath)) {
+            return readAll(reader);
+        }
+    }
+
+    /**
+     * Opens a CSV file for streaming, returning its rows one at a time as {@link Record} objects.
+     * The same column layout as for {@link #readCSV(String)} is expected.
+     *
+     * @param filePath the file path of the CSV file to read
+     * @return a {@link RecordReader} over the records in the file, which must be closed by the caller
+     * @throws IOException if the file cannot be opened
+     */
+    public static RecordReader openCSV(String filePath) throws IOException {
+        return new CsvRecordReader(filePath);
+    }
+
+    /**
+     * Reads a CSV file like {@link #readCSV(String)}, but parses the file on multiple threads.
+     * The records are returned in the same order as they appear in the file.
+     *
+     * @param filePath the file path of the CSV file to read
+     * @param parallelism the number of threads used for parsing
+     * @return a list of {@link Record} objects containing the data from the CSV file
+     * @throws IOException if an I/O error occurs while reading the file
+     * @throws NumberFormatException if there is an error parsing numerical values from the CSV
+     */
+    public static ArrayList<Record> readCSVParallel(String filePath, int parallelism) throws IOException, NumberFormatException {
+        try (RecordReader reader = openCSVParallel(filePath, parallelism)) {
+            return readAll(reader);
+        }
+    }
+
+    /**
+     * Opens a CSV file for streaming, parsing chunks of the file on multiple threads ahead of the consumer.
+     *
+     * @param filePath the file path of the CSV file to read
+     * @param parallelism the number of threads used for parsing
+     * @return a {@link ParallelCsvRecordReader} over the records in the file, which must be closed by the caller
+     * @throws IOException if the file cannot be opened
+     */
+    public static RecordReader openCSVParallel(String filePath, int parallelism) throws IOException {
+        return new ParallelCsvRecordReader(filePath, parallelism);
+    }
+
+    /**
+     * Opens a CSV file through a memory-mapped tokenizer. Processed through {@link StatementPipeline}, only the
+     * rows that have to be reported are turned into {@link Record} objects.
+     *
+     * @param filePath the file path of the CSV file to read
+     * @return a {@link MappedCsvRecordReader} over the records in the file, which must be closed by the caller
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static RecordReader openCSVMapped(String filePath) throws IOException {
+        return new MappedCsvRecordReader(filePath);
+    }
+
+    /**
+     * Parses a single (non-header) CSV line into a {@link Record}.
+     *
+     * @param line the CSV line, without line terminator
+     * @return the parsed {@link Record}, or {@code null} if the line does not have exactly six columns
+     * @throws NumberFormatException if there is an error parsing numerical values from the line
+     */
+    static Record parseCSVLine(String line) throws NumberFormatException {
         // TODO: this file is now assuming a standard order of the columns in the csv, it should probably use another java library that works with headers (e.g. apache commons)
         // TODO: Some validation on what headers should exits should be expanded (now we only check line length)
-        ArrayList<Record> records = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            boolean isFirstLine = true;  // Flag to check the first line
-            while ((line = br.readLine()) != null) {
-                // Skip the header line
-                if (isFirstLine) {
-                    isFirstLine = false;  // After the first line, set the flag to false
-                    continue;  // Skip the rest of the loop for the header line
-                }
-                String[] fields = line.split(",");
-                if (fields.length == 6) {
-                    Record record = new Record(
-                            Integer.parseInt(fields[0]),
-                            fields[1],
-                            fields[2],
-                            new BigDecimal(fields[3]),
-                            fields[4],
-                            new BigDecimal(fields[5])
-                    );
-                    records.add(record);
-                }
+        String[] fields = line.split(",");
+        if (fields.length != 6) {
+            return null;
+        }
+        return new Record(
+                Integer.parseInt(fields[0]),
+                // Account numbers and descriptions repeat, so the records share their strings
+                StringCache.SHARED.intern(fields[1]),
+                StringCache.SHARED.intern(fields[2]),
+                new BigDecimal(fields[3]),
+                fields[4],
+                new BigDecimal(fields[5])
+        );
+    }
+
+    /**
+     * Parses a single (non-header) CSV line like {@link #parseCSVLine(String)}, but hands the line to the quarantine
+     * when it cannot be parsed or does not have exactly six columns. Empty lines are skipped.
+     *
+     * @param line the CSV line, without line terminator
+     * @param quarantine the quarantine for lines that cannot be parsed, or {@code null} to parse strictly
+     * @param unit the unit of the position of the line, {@code "line"} or {@code "byte"}
+     * @param position the line number or byte offset of the line
+     * @return the parsed {@link Record}, or {@code null} if the line was skipped
+     * @throws IOException if the line cannot be written to the quarantine
+     * @throws NumberFormatException if there is an error parsing numerical values and there is no quarantine
+     */
+    static Record parseCSVLine(String line, Quarantine quarantine, String unit, long position)
+            throws IOException, NumberFormatException {
+        if (quarantine == null) {
+            return parseCSVLine(line);
+        }
+        try {
+            Record record = parseCSVLine(line);
+            if (record == null && !line.isEmpty()) {
+                quarantine.add(unit + " " + position, line, "Expected 6 columns, found " + line.split(",").length);
             }
+            return record;
+        } catch (IllegalArgumentException e) {
+            quarantine.add(unit + " " + position, line, Quarantine.describe(e));
+            return null;
         }
-        return records;
     }
 
     /**
@@ -83,40 +154,52 @@ public class FileReaderUtil {
      *     &lt;endBalance&gt;68.96&lt;/endBalance&gt;
      * &lt;/record&gt;
      * </pre>
+     * <p>
+     * The file is parsed with the streaming {@link XmlRecordReader}, so no DOM tree of the document is built.
+     * Use {@link #openXML(String)} directly to process records without collecting them into a list.
+     * </p>
      *
      * @param filePath the file path of the XML file to read
      * @return a list of {@link Record} objects containing the data from the XML file
-     * @throws ParserConfigurationException if a document builder cannot be created
      * @throws IOException if an I/O error occurs while reading the file
-     * @throws SAXException if an error occurs while parsing the XML
+     * @throws MalformedStatementException if the XML is not well-formed or a record misses one of its fields
      * @throws NumberFormatException if there is an error parsing numerical values from the XML
      */
-    public static ArrayList<Record> readXML(String filePath) throws ParserConfigurationException, IOException, SAXException, NumberFormatException {
-        ArrayList<Record> records = new ArrayList<>();
-        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-        Document doc = dBuilder.parse(new File(filePath));
+    public static ArrayList<Record> readXML(String filePath) throws IOException, NumberFormatException {
+        try (RecordReader reader = openXML(filePath)) {
+            return readAll(reader);
+        }
+    }
 
-        // Making sure the XML document is "correctly" formatted
-        doc.getDocumentElement().normalize();
+    /**
+     * Opens an XML file for streaming, returning its <code>&lt;record&gt;</code> elements one at a time.
+     *
+     * @param filePath the file path of the XML file to read
+     * @return a {@link RecordReader} over the records in the file, which must be closed by the caller
+     * @throws IOException if the file cannot be opened
+     */
+    public static RecordReader openXML(String filePath) throws IOException {
         // TODO: maybe some validation on the XML format could be added with e.g. XSD
-        NodeList nodeList = doc.getElementsByTagName("record");
+        return new XmlRecordReader(filePath);
+    }
 
-        for (int i = 0; i < nodeList.getLength(); i++) {
-            Node node = nodeList.item(i);
+    /**
+     * Opens a columnar statement file, as written by {@link ColumnarStatementWriter}. Processed through
+     * {@link StatementPipeline}, the records are validated straight from the mapped columns.
+     *
+     * @param filePath the file path of the columnar file to read
+     * @return a {@link ColumnarRecordReader} over the records in the file, which must be closed by the caller
+     * @throws IOException if the file cannot be opened or is not a columnar statement file
+     */
+    public static RecordReader openColumnar(String filePath) throws IOException {
+        return new ColumnarRecordReader(filePath);
+    }
 
-            if (node.getNodeType() == Node.ELEMENT_NODE) {
-                Element element = (Element) nodeList.item(i);
-                Record record = new Record(
-                        Integer.parseInt(element.getAttribute("reference")),
-                        element.getElementsByTagName("accountNumber").item(0).getTextContent(),
-                        element.getElementsByTagName("description").item(0).getTextContent(),
-                        new BigDecimal(element.getElementsByTagName("startBalance").item(0).getTextContent()),
-                        element.getElementsByTagName("mutation").item(0).getTextContent(),
-                        new BigDecimal(element.getElementsByTagName("endBalance").item(0).getTextContent())
-                );
-                records.add(record);
-            }
+    private static ArrayList<Record> readAll(RecordReader reader) throws IOException, NumberFormatException {
+        ArrayList<Record> records = new ArrayList<>();
+        Record record;
+        while ((record = reader.next()) != null) {
+            records.add(record);
         }
         return records;
     }
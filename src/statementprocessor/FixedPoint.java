@@ -0,0 +1,135 @@
+// FixedPoint.java
+package statementprocessor;
+
+import java.math.BigDecimal;
+
+/**
+ * Fixed-point helpers for monetary amounts, represented as a {@code long} number of cents.
+ * <p>
+ * Amounts are only converted when that can be done exactly: an amount with more than two decimals, in a notation
+ * {@link java.math.BigDecimal} understands but this class does not (e.g. an exponent), or with more than
+ * {@link #MAX_INTEGER_DIGITS} integer digits is reported as {@link #NOT_REPRESENTABLE}. Callers then fall back to
+ * {@link java.math.BigDecimal} arithmetic. The digit limit guarantees that adding or subtracting two amounts in
+ * cents can never overflow a {@code long}.
+ * </p>
+ */
+final class FixedPoint {
+    /**
+     * The number of decimals of an amount in cents.
+     */
+    static final int SCALE = 2;
+    /**
+     * Marker for an amount that cannot be represented exactly in cents.
+     */
+    static final long NOT_REPRESENTABLE = Long.MIN_VALUE;
+
+    private static final int MAX_INTEGER_DIGITS = 15;
+
+    private FixedPoint() {
+    }
+
+    /**
+     * Parses an amount in the format {@code [+-]?\d+(\.\d{1,2})?} from the characters {@code [from, to)}.
+     *
+     * @return the amount in cents, or {@link #NOT_REPRESENTABLE} if the text is not in the expected format
+     *         or has too many integer digits
+     */
+    static long parseCents(CharSequence text, int from, int to) {
+        if (from < to && (text.charAt(from) == '+' || text.charAt(from) == '-')) {
+            long value = parseUnsignedCents(text, from + 1, to);
+            return value == NOT_REPRESENTABLE || text.charAt(from) == '+' ? value : -value;
+        }
+        return parseUnsignedCents(text, from, to);
+    }
+
+    /**
+     * Parses an amount in the format {@code \d+(\.\d{1,2})?} from the characters {@code [from, to)}.
+     *
+     * @return the amount in cents, or {@link #NOT_REPRESENTABLE} if the text is not in the expected format
+     *         or has too many integer digits
+     */
+    static long parseUnsignedCents(CharSequence text, int from, int to) {
+        long value = 0;
+        int i = from;
+        for (; i < to; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            value = value * 10 + digit;
+            if (i - from == MAX_INTEGER_DIGITS) {
+                return NOT_REPRESENTABLE;
+            }
+        }
+        if (i == from) {
+            return NOT_REPRESENTABLE;
+        }
+
+        int fractionDigits = 0;
+        if (i < to) {
+            if (text.charAt(i) != '.' || to - i - 1 < 1 || to - i - 1 > SCALE) {
+                return NOT_REPRESENTABLE;
+            }
+            for (i++; i < to; i++) {
+                int digit = text.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    return NOT_REPRESENTABLE;
+                }
+                value = value * 10 + digit;
+                fractionDigits++;
+            }
+        }
+        for (; fractionDigits < SCALE; fractionDigits++) {
+            value *= 10;
+        }
+        return value;
+    }
+
+    /**
+     * Checks that the characters {@code [from, to)} are an amount in the format {@code \d+(\.\d{1,2})?},
+     * without any limit on the number of integer digits.
+     */
+    static boolean isUnsignedAmount(CharSequence text, int from, int to) {
+        int i = from;
+        while (i < to && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+            i++;
+        }
+        if (i == from) {
+            return false;
+        }
+        if (i == to) {
+            return true;
+        }
+        int fractionDigits = to - i - 1;
+        if (text.charAt(i) != '.' || fractionDigits < 1 || fractionDigits > SCALE) {
+            return false;
+        }
+        for (i++; i < to; i++) {
+            if (text.charAt(i) < '0' || text.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Converts an amount to cents, if that can be done exactly.
+     *
+     * @return the amount in cents, or {@link #NOT_REPRESENTABLE} if the amount has more than two decimals or more
+     *         than {@link #MAX_INTEGER_DIGITS} integer digits
+     */
+    static long toCents(BigDecimal amount) {
+        if (amount.scale() > SCALE || amount.precision() - amount.scale() > MAX_INTEGER_DIGITS) {
+            return NOT_REPRESENTABLE;
+        }
+        return amount.scale() == 0 ? amount.longValue() * 100 : amount.movePointRight(SCALE).longValue();
+    }
+
+    /**
+     * Checks that the start balance plus the (signed) mutation equals the end balance, all in cents.
+     * None of the amounts may be {@link #NOT_REPRESENTABLE}.
+     */
+    static boolean isBalanced(long startBalance, long mutation, long endBalance) {
+        return startBalance + mutation == endBalance;
+    }
+}
@@ -0,0 +1,126 @@
+// IntHashReferenceIndex.java
+package statementprocessor;
+
+import java.util.function.IntConsumer;
+
+/**
+ * {@link ReferenceIndex} backed by an open addressing hash set of primitive {@code int}s (linear probing).
+ * <p>
+ * Compared to a {@code HashSet<Integer>}, which needs a boxed {@code Integer} and a map entry per reference
+ * (roughly 50 bytes), this set needs 4 to 8 bytes per reference.
+ * </p>
+ */
+public class IntHashReferenceIndex implements ReferenceIndex {
+    private static final int EMPTY = 0;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private int[] slots;
+    private int mask;
+    private int size;
+    // 0 marks an empty slot, so the reference 0 itself is tracked separately
+    private boolean containsEmpty;
+
+    public IntHashReferenceIndex() {
+        this(1024);
+    }
+
+    /**
+     * @param expectedSize the number of references the index should hold without resizing
+     */
+    public IntHashReferenceIndex(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, Math.min(MAX_CAPACITY, expectedSize * 2) - 1)) << 1;
+        slots = new int[Math.min(capacity, MAX_CAPACITY)];
+        mask = slots.length - 1;
+    }
+
+    @Override
+    public boolean add(int reference) {
+        if (reference == EMPTY) {
+            boolean added = !containsEmpty;
+            containsEmpty = true;
+            return added;
+        }
+        int index = slot(reference);
+        while (slots[index] != EMPTY) {
+            if (slots[index] == reference) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        slots[index] = reference;
+        // Keep the load factor at or below 0.5, so probe sequences stay short
+        if (++size > slots.length >> 1) {
+            grow();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(int reference) {
+        if (reference == EMPTY) {
+            return containsEmpty;
+        }
+        int index = slot(reference);
+        while (slots[index] != EMPTY) {
+            if (slots[index] == reference) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    @Override
+    public long size() {
+        return size + (containsEmpty ? 1 : 0);
+    }
+
+    /**
+     * Passes every reference in the index to the action, in no particular order.
+     *
+     * @param action the action
+     */
+    void forEach(IntConsumer action) {
+        if (containsEmpty) {
+            action.accept(EMPTY);
+        }
+        for (int reference : slots) {
+            if (reference != EMPTY) {
+                action.accept(reference);
+            }
+        }
+    }
+
+    private int slot(int reference) {
+        return mix(reference) & mask;
+    }
+
+    /**
+     * Spreads sequential references over the table (the finalizer of MurmurHash3).
+     */
+    static int mix(int value) {
+        int h = value ^ (value >>> 16);
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+
+    private void grow() {
+        if (slots.length == MAX_CAPACITY) {
+            throw new IllegalStateException("Reference index is full, use an off-heap or bitmap index instead");
+        }
+        int[] old = slots;
+        slots = new int[old.length << 1];
+        mask = slots.length - 1;
+        for (int reference : old) {
+            if (reference != EMPTY) {
+                int index = slot(reference);
+                while (slots[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                slots[index] = reference;
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+// JsonLinesReportWriter.java
+package statementprocessor;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * {@link ReportWriter} that writes every failed record as a JSON object on its own line (JSON Lines), e.g.
+ * <pre>
+ * {"reference":112806,"accountNumber":"NL43AEGO0773393871","description":"Candy","reason":"DUPLICATE_REFERENCE"}
+ * </pre>
+ * The reason is the name of the {@link FailureReason}, or {@code null} when unknown. When the statement file is set
+ * with {@link #setSource(String)}, it is added as a {@code "file"} property.
+ */
+public class JsonLinesReportWriter extends AbstractReportWriter {
+    /**
+     * @param out the writer to write the report to, closed when this report writer is closed
+     */
+    public JsonLinesReportWriter(Writer out) {
+        super(out);
+    }
+
+    @Override
+    protected void writeHeader() {
+        // JSON Lines has no header
+    }
+
+    @Override
+    protected void writeRecord(Record record, FailureReason reason) throws IOException {
+        out.write("{\"reference\":");
+        out.write(Integer.toString(record.getTransactionReference()));
+        out.write(",\"accountNumber\":");
+        writeString(out, record.getAccountNumber());
+        out.write(",\"description\":");
+        writeString(out, record.getDescription());
+        out.write(",\"reason\":");
+        out.write(reason == null ? "null" : "\"" + reason.name() + "\"");
+        if (getSource() != null) {
+            out.write(",\"file\":");
+            writeString(out, getSource());
+        }
+        out.write("}\n");
+    }
+
+    /**
+     * Writes a JSON string literal, escaping quotes, backslashes and control characters.
+     */
+    static void writeString(Writer out, String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20) {
+                out.write(String.format("\\u%04x", (int) c));
+            } else {
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+}
@@ -0,0 +1,20 @@
+// MalformedStatementException.java
+package statementprocessor;
+
+import java.io.IOException;
+
+/**
+ * Signals that a statement file could be read, but its content does not follow the expected
+ * CSV or XML layout (e.g. the XML is not well-formed or a record misses one of its fields).
+ */
+public class MalformedStatementException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public MalformedStatementException(String message) {
+        super(message);
+    }
+
+    public MalformedStatementException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
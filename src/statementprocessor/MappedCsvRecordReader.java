@@ -0,0 +1,282 @@
+// MappedCsvRecordReader.java
+package statementprocessor;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@link RecordReader} for CSV statement files that scans a memory-mapped file byte by byte.
+ * <p>
+ * Besides {@link #next()}, which creates a {@link Record} for every row, this reader offers a {@link RecordCursor} API:
+ * {@link #advance()} moves to the next row, after which the transaction reference and the amounts (in cents,
+ * see {@link FixedPoint}) can be read straight from the mapped bytes. Strings are only created when they are
+ * asked for, e.g. through {@link #toRecord()} when the row has to be reported. Used like that, as
+ * {@link StatementPipeline} does, checking a row allocates no objects at all.
+ * </p>
+ * Rows are split the same way as {@link FileReaderUtil#parseCSVLine(String)} does, so both readers return the
+ * same records. The file is mapped in windows, which allows files larger than 2 GB.
+ */
+public class MappedCsvRecordReader implements RecordCursor {
+    static final int DEFAULT_WINDOW_SIZE = 256 * 1024 * 1024;
+    private static final int FIELD_COUNT = 6;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int windowSize;
+    private final Charset charset = Charset.defaultCharset();
+    private final int[] fieldStart = new int[FIELD_COUNT];
+    private final int[] fieldEnd = new int[FIELD_COUNT];
+    private final ByteSequence bytes = new ByteSequence();
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int position;
+    private boolean headerSkipped;
+    private int rowStart;
+    private int rowEnd;
+    private Quarantine quarantine;
+
+    /**
+     * Maps the CSV file at the given path.
+     *
+     * @param filePath the file path of the CSV file to read
+     * @throws IOException if the file cannot be opened
+     */
+    public MappedCsvRecordReader(String filePath) throws IOException {
+        this(filePath, DEFAULT_WINDOW_SIZE);
+    }
+
+    MappedCsvRecordReader(String filePath, int windowSize) throws IOException {
+        this.channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        this.size = channel.size();
+        this.windowSize = windowSize;
+        map(0);
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, size - start));
+        bytes.wrap(window);
+        position = 0;
+    }
+
+    /**
+     * Moves the cursor to the next row that has the expected six columns. When reading leniently, the rows that do
+     * not are quarantined.
+     *
+     * @return {@code true} if the cursor is on a row, {@code false} at the end of the file
+     * @throws IOException if the file cannot be mapped, a single line does not fit in a mapped window, or a row
+     * cannot be written to the quarantine
+     */
+    @Override
+    public boolean advance() throws IOException {
+        while (true) {
+            int lineEnd = nextLineEnd();
+            if (lineEnd < 0) {
+                return false;
+            }
+            int lineStart = position;
+            position = lineEnd < window.limit() ? lineEnd + 1 : lineEnd;
+            if (!headerSkipped) {
+                headerSkipped = true;
+                continue;
+            }
+            if (lineEnd > lineStart && window.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            rowStart = lineStart;
+            rowEnd = lineEnd;
+            if (split(lineStart, lineEnd)) {
+                return true;
+            }
+            if (quarantine != null && lineEnd > lineStart) {
+                String row = row();
+                quarantine.add("byte " + (windowStart + lineStart), row, "Expected 6 columns, found " + row.split(",").length);
+            }
+        }
+    }
+
+    /**
+     * Finds the end of the line at the current position, mapping the next window when the line crosses the
+     * end of the current one.
+     *
+     * @return the index of the line terminator (or of the end of the file), or -1 at the end of the file
+     */
+    private int nextLineEnd() throws IOException {
+        while (true) {
+            int limit = window.limit();
+            for (int i = position; i < limit; i++) {
+                if (window.get(i) == '\n') {
+                    return i;
+                }
+            }
+            long lineStart = windowStart + position;
+            if (windowStart + limit >= size) {
+                return position < limit ? limit : -1;
+            }
+            if (position == 0) {
+                throw new IOException("Line at byte " + lineStart + " does not fit in a window of " + windowSize + " bytes");
+            }
+            map(lineStart);
+        }
+    }
+
+    /**
+     * Splits the line into fields. Like {@link String#split(String)}, trailing empty fields are ignored.
+     *
+     * @return {@code true} if the line has exactly six (non-trailing-empty) fields
+     */
+    private boolean split(int lineStart, int lineEnd) {
+        int count = 0;
+        int start = lineStart;
+        int lastNonEmpty = 0;
+        for (int i = lineStart; i <= lineEnd; i++) {
+            if (i == lineEnd || window.get(i) == ',') {
+                if (i > start) {
+                    if (count >= FIELD_COUNT) {
+                        return false;
+                    }
+                    lastNonEmpty = count + 1;
+                }
+                if (count < FIELD_COUNT) {
+                    fieldStart[count] = start;
+                    fieldEnd[count] = i;
+                }
+                count++;
+                start = i + 1;
+            }
+        }
+        return lastNonEmpty == FIELD_COUNT;
+    }
+
+    /**
+     * @return the transaction reference of the current row
+     * @throws NumberFormatException if the reference is not a valid integer
+     */
+    @Override
+    public int reference() throws NumberFormatException {
+        int from = fieldStart[0];
+        int to = fieldEnd[0];
+        // Up to nine digits always fit in an int; anything else is left to Integer.parseInt
+        if (to - from > 0 && to - from <= 9) {
+            int value = 0;
+            for (int i = from; i < to; i++) {
+                int digit = window.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    return Integer.parseInt(field(0));
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+        return Integer.parseInt(field(0));
+    }
+
+    /**
+     * @return the start balance of the current row in cents, or {@link FixedPoint#NOT_REPRESENTABLE}
+     */
+    @Override
+    public long startBalanceCents() {
+        return FixedPoint.parseCents(bytes, fieldStart[3], fieldEnd[3]);
+    }
+
+    /**
+     * @return the signed mutation of the current row in cents, or {@link FixedPoint#NOT_REPRESENTABLE}
+     */
+    @Override
+    public long mutationCents() {
+        return FixedPoint.parseCents(bytes, fieldStart[4], fieldEnd[4]);
+    }
+
+    /**
+     * @return the end balance of the current row in cents, or {@link FixedPoint#NOT_REPRESENTABLE}
+     */
+    @Override
+    public long endBalanceCents() {
+        return FixedPoint.parseCents(bytes, fieldStart[5], fieldEnd[5]);
+    }
+
+    /**
+     * @return the account number of the current row
+     */
+    public String accountNumber() {
+        return StringCache.SHARED.intern(window, fieldStart[1], fieldEnd[1], charset);
+    }
+
+    /**
+     * @return the description of the current row
+     */
+    public String description() {
+        return StringCache.SHARED.intern(window, fieldStart[2], fieldEnd[2], charset);
+    }
+
+    private String field(int index) {
+        int length = fieldEnd[index] - fieldStart[index];
+        byte[] bytes = new byte[length];
+        window.get(fieldStart[index], bytes, 0, length);
+        return new String(bytes, charset);
+    }
+
+    /**
+     * Creates a {@link Record} for the current row.
+     *
+     * @return the record
+     * @throws NumberFormatException if there is an error parsing numerical values from the row
+     */
+    @Override
+    public Record toRecord() throws NumberFormatException {
+        return new Record(
+                reference(),
+                accountNumber(),
+                description(),
+                new BigDecimal(field(3)),
+                field(4),
+                new BigDecimal(field(5))
+        );
+    }
+
+    @Override
+    public Record next() throws IOException, NumberFormatException {
+        while (advance()) {
+            try {
+                return toRecord();
+            } catch (IllegalArgumentException e) {
+                if (!quarantine(e)) {
+                    throw e;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void setQuarantine(Quarantine quarantine) {
+        this.quarantine = quarantine;
+    }
+
+    @Override
+    public boolean quarantine(RuntimeException cause) throws IOException {
+        if (quarantine == null) {
+            return false;
+        }
+        quarantine.add("byte " + (windowStart + rowStart), row(), Quarantine.describe(cause));
+        return true;
+    }
+
+    private String row() {
+        byte[] bytes = new byte[rowEnd - rowStart];
+        window.get(rowStart, bytes, 0, bytes.length);
+        return new String(bytes, charset);
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
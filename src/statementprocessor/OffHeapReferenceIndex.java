@@ -0,0 +1,119 @@
+// OffHeapReferenceIndex.java
+package statementprocessor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * {@link ReferenceIndex} backed by an open addressing hash set (linear probing) in direct memory.
+ * <p>
+ * The table lives outside of the Java heap, so hundreds of millions of references can be deduplicated without
+ * a large heap or long garbage collection pauses. The table is split into segments of at most 1 GB, because a
+ * single {@link ByteBuffer} cannot be larger than 2 GB. Direct memory is limited by
+ * {@code -XX:MaxDirectMemorySize}, which defaults to the maximum heap size.
+ * </p>
+ */
+public class OffHeapReferenceIndex implements ReferenceIndex {
+    private static final int EMPTY = 0;
+    private static final int SEGMENT_SHIFT = 28;
+    private static final long MAX_CAPACITY = 1L << 32;
+    static final int DEFAULT_EXPECTED_SIZE = 1 << 20;
+
+    private ByteBuffer[] segments;
+    private long capacity;
+    private long mask;
+    private long size;
+    private boolean containsEmpty;
+
+    public OffHeapReferenceIndex() {
+        this(DEFAULT_EXPECTED_SIZE);
+    }
+
+    /**
+     * @param expectedSize the number of references the index should hold without resizing
+     */
+    public OffHeapReferenceIndex(long expectedSize) {
+        allocate(Math.min(MAX_CAPACITY, Long.highestOneBit(Math.max(16, expectedSize * 2) - 1) << 1));
+    }
+
+    private void allocate(long newCapacity) {
+        capacity = newCapacity;
+        mask = newCapacity - 1;
+        int slotsPerSegment = (int) Math.min(newCapacity, 1L << SEGMENT_SHIFT);
+        segments = new ByteBuffer[(int) (newCapacity / slotsPerSegment)];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = ByteBuffer.allocateDirect(slotsPerSegment * Integer.BYTES).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    private int get(long slot) {
+        return segments[(int) (slot >>> SEGMENT_SHIFT)].getInt((int) (slot & ((1 << SEGMENT_SHIFT) - 1)) * Integer.BYTES);
+    }
+
+    private void put(long slot, int reference) {
+        segments[(int) (slot >>> SEGMENT_SHIFT)].putInt((int) (slot & ((1 << SEGMENT_SHIFT) - 1)) * Integer.BYTES, reference);
+    }
+
+    @Override
+    public boolean add(int reference) {
+        if (reference == EMPTY) {
+            boolean added = !containsEmpty;
+            containsEmpty = true;
+            return added;
+        }
+        long slot = IntHashReferenceIndex.mix(reference) & mask;
+        int current;
+        while ((current = get(slot)) != EMPTY) {
+            if (current == reference) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        put(slot, reference);
+        if (++size > capacity >> 1) {
+            grow();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(int reference) {
+        if (reference == EMPTY) {
+            return containsEmpty;
+        }
+        long slot = IntHashReferenceIndex.mix(reference) & mask;
+        int current;
+        while ((current = get(slot)) != EMPTY) {
+            if (current == reference) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    @Override
+    public long size() {
+        return size + (containsEmpty ? 1 : 0);
+    }
+
+    private void grow() {
+        if (capacity == MAX_CAPACITY) {
+            throw new IllegalStateException("Reference index is full");
+        }
+        ByteBuffer[] old = segments;
+        long oldCapacity = capacity;
+        allocate(capacity << 1);
+        for (long i = 0; i < oldCapacity; i++) {
+            int reference = old[(int) (i >>> SEGMENT_SHIFT)].getInt((int) (i & ((1 << SEGMENT_SHIFT) - 1)) * Integer.BYTES);
+            if (reference != EMPTY) {
+                long slot = IntHashReferenceIndex.mix(reference) & mask;
+                while (get(slot) != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                put(slot, reference);
+            }
+        }
+        // The old segments are released by the garbage collector once they are no longer referenced
+    }
+}
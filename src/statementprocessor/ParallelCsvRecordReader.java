@@ -0,0 +1,211 @@
+// ParallelCsvRecordReader.java
+package statementprocessor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * {@link RecordReader} for CSV statement files that parses the file on multiple cores.
+ * <p>
+ * The file is split into byte ranges (chunks) that are parsed concurrently on a {@link ForkJoinPool}.
+ * A line belongs to the chunk in which it starts, so a chunk skips the partial line at its start and reads
+ * past its end to complete its last line. The parsed chunks are handed out strictly in file order, which
+ * makes the output identical to that of {@link CsvRecordReader}. Only a bounded number of chunks is parsed
+ * ahead of the consumer, so the memory usage does not grow with the size of the file.
+ * </p>
+ */
+public class ParallelCsvRecordReader implements RecordReader {
+    static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+    private static final int READ_AHEAD_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int chunkSize;
+    private final int maxChunksInFlight;
+    private final ForkJoinPool pool;
+    private final Charset charset = Charset.defaultCharset();
+    private final Deque<Future<Chunk>> pending = new ArrayDeque<>();
+
+    private long nextChunkStart;
+    private Iterator<Record> current = null;
+    private RuntimeException currentError;
+    private Quarantine quarantine;
+
+    /**
+     * Opens the CSV file at the given path for parallel parsing.
+     *
+     * @param filePath the file path of the CSV file to read
+     * @param parallelism the number of threads used for parsing
+     * @throws IOException if the file cannot be opened
+     */
+    public ParallelCsvRecordReader(String filePath, int parallelism) throws IOException {
+        this(filePath, parallelism, DEFAULT_CHUNK_SIZE);
+    }
+
+    ParallelCsvRecordReader(String filePath, int parallelism, int chunkSize) throws IOException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1, but was " + parallelism);
+        }
+        this.channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        this.size = channel.size();
+        this.chunkSize = chunkSize;
+        // Keep every thread busy while the consumer works through the oldest chunk
+        this.maxChunksInFlight = parallelism * 2;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    @Override
+    public Record next() throws IOException, NumberFormatException {
+        while (current == null || !current.hasNext()) {
+            if (currentError != null) {
+                RuntimeException error = currentError;
+                currentError = null;
+                throw error;
+            }
+            schedule();
+            if (pending.isEmpty()) {
+                return null;
+            }
+            Chunk chunk = await(pending.removeFirst());
+            for (String[] row : chunk.quarantined) {
+                quarantine.add(row[0], row[1], row[2]);
+            }
+            current = chunk.records.iterator();
+            currentError = chunk.error;
+        }
+        return current.next();
+    }
+
+    private void schedule() {
+        while (pending.size() < maxChunksInFlight && nextChunkStart < size) {
+            long start = nextChunkStart;
+            long end = Math.min(size, start + chunkSize);
+            pending.addLast(pool.submit(() -> parseChunk(start, end)));
+            nextChunkStart = end;
+        }
+    }
+
+    private static Chunk await(Future<Chunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the CSV parser", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Failed to parse the CSV file", cause);
+        }
+    }
+
+    /**
+     * Parses all lines that start in the byte range [start, end). The first line of the file is the header.
+     */
+    private Chunk parseChunk(long start, long end) {
+        // Reading from the byte before the chunk tells whether the chunk starts at the beginning of a line
+        long readFrom = start == 0 ? 0 : start - 1;
+        byte[] bytes = read(readFrom, (int) (end - readFrom));
+        int length = bytes.length;
+
+        // Skip the header, or the tail of a line that belongs to the previous chunk
+        int lineStart = indexOf(bytes, 0, length, (byte) '\n') + 1;
+        int limit = (int) (end - readFrom);
+
+        Chunk chunk = new Chunk();
+        while (lineStart > 0 && lineStart < limit) {
+            int newline = indexOf(bytes, lineStart, length, (byte) '\n');
+            while (newline < 0 && readFrom + length < size) {
+                // The last line continues past the end of the chunk
+                byte[] more = read(readFrom + length, READ_AHEAD_SIZE);
+                bytes = Arrays.copyOf(bytes, length + more.length);
+                System.arraycopy(more, 0, bytes, length, more.length);
+                newline = indexOf(bytes, length, length + more.length, (byte) '\n');
+                length += more.length;
+            }
+            int lineEnd = newline < 0 ? length : newline;
+            if (lineEnd > lineStart && bytes[lineEnd - 1] == '\r') {
+                lineEnd--;
+            }
+            try {
+                String line = new String(bytes, lineStart, lineEnd - lineStart, charset);
+                // Quarantined lines are collected in the chunk, and handed to the quarantine in file order
+                Record record = FileReaderUtil.parseCSVLine(line, quarantine == null ? null : chunk::quarantine,
+                        "byte", readFrom + lineStart);
+                if (record != null) {
+                    chunk.records.add(record);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (RuntimeException e) {
+                // Hand out the records before the invalid line first, just like the sequential reader does
+                chunk.error = e;
+                break;
+            }
+            lineStart = newline < 0 ? length : newline + 1;
+        }
+        return chunk;
+    }
+
+    private byte[] read(long position, int length) {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(length, size - position));
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.position() == buffer.capacity() ? buffer.array() : Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private static int indexOf(byte[] bytes, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void setQuarantine(Quarantine quarantine) {
+        this.quarantine = quarantine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        pool.shutdownNow();
+        channel.close();
+    }
+
+    private static final class Chunk {
+        private final List<Record> records = new ArrayList<>();
+        private final List<String[]> quarantined = new ArrayList<>();
+        private RuntimeException error;
+
+        private void quarantine(String location, String text, String cause) {
+            quarantined.add(new String[]{location, text, cause});
+        }
+    }
+}
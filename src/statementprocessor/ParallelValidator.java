@@ -0,0 +1,292 @@
+// ParallelValidator.java
+package statementprocessor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Validates records on multiple cores, with exactly the same outcome as the sequential {@link Validator}.
+ * <p>
+ * The transaction references are sharded by hash: every shard has its own {@link ReferenceIndex} and is validated
+ * by a single task, which visits the records of that shard in file order. References are sharded in runs of 64, so
+ * the shards can also share a single bitmap index ({@link BitmapReferenceIndex}, {@link PersistentReferenceIndex}):
+ * two shards never write to the same 64-bit word of the bitmap. All occurrences of a reference end up
+ * in the same shard, so the first occurrence is accepted and the later ones are flagged, exactly like the sequential
+ * validator does, without any locking. The balance check is done by the same tasks.
+ * </p>
+ * <p>
+ * The balance chains of the accounts (see {@link AccountChain}) are checked in a second pass, in which the records
+ * are partitioned by a hash of their account number instead: every partition has its own chain and visits its records
+ * in file order, skipping the duplicates found in the first pass, so the outcome is again the same as sequential.
+ * </p>
+ * Records are validated in batches, see {@link #validateBatch(List)}. The shards are kept between batches, so
+ * duplicates are also found across batches, as long as the batches are passed in file order.
+ */
+public class ParallelValidator implements AutoCloseable {
+    private static final int MIN_RECORDS_PER_BLOCK = 4096;
+
+    private final int parallelism;
+    private final ForkJoinPool pool;
+    private final boolean ownsPool;
+    private final ReferenceIndex[] shards;
+    private final AccountChain[] accountChains;
+    private final int shardShift;
+
+    /**
+     * Creates a validator that uses the given number of threads, and an {@link IntHashReferenceIndex} per shard.
+     *
+     * @param parallelism the number of threads used for validation
+     */
+    public ParallelValidator(int parallelism) {
+        this(parallelism, IntHashReferenceIndex::new);
+    }
+
+    /**
+     * Creates a validator that uses the given number of threads.
+     *
+     * @param parallelism the number of threads used for validation
+     * @param indexFactory creates the (empty) reference index of each shard, see {@link #shardCount(int)}; may return
+     *                     the same bitmap index for every shard
+     */
+    public ParallelValidator(int parallelism, Supplier<ReferenceIndex> indexFactory) {
+        this(parallelism, indexFactory, false);
+    }
+
+    /**
+     * Creates a validator that uses the given number of threads, and optionally checks the balance chain of every
+     * account.
+     *
+     * @param parallelism the number of threads used for validation
+     * @param indexFactory creates the (empty) reference index of each shard, see {@link #shardCount(int)}; may return
+     *                     the same bitmap index for every shard
+     * @param checkAccountChains whether the balance chains of the accounts are checked
+     */
+    public ParallelValidator(int parallelism, Supplier<ReferenceIndex> indexFactory, boolean checkAccountChains) {
+        this(newPool(parallelism), true, indexFactory, checkAccountChains);
+    }
+
+    /**
+     * Creates a validator that runs on a pool shared with other validators, e.g. by the {@link StatementServer} for
+     * all concurrent submissions. The pool is not shut down when the validator is closed.
+     *
+     * @param pool the pool that validates the records, with the number of threads used for validation
+     * @param indexFactory creates the (empty) reference index of each shard, see {@link #shardCount(int)}; may return
+     *                     the same bitmap index for every shard
+     * @param checkAccountChains whether the balance chains of the accounts are checked
+     */
+    public ParallelValidator(ForkJoinPool pool, Supplier<ReferenceIndex> indexFactory, boolean checkAccountChains) {
+        this(pool, false, indexFactory, checkAccountChains);
+    }
+
+    private ParallelValidator(ForkJoinPool pool, boolean ownsPool, Supplier<ReferenceIndex> indexFactory,
+                              boolean checkAccountChains) {
+        this.parallelism = pool.getParallelism();
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+        int shardBits = Integer.numberOfTrailingZeros(shardCount(parallelism));
+        this.shards = new ReferenceIndex[1 << shardBits];
+        // The shard is taken from the high bits of the hash, the hash indexes use the low bits for their slots
+        this.shardShift = Integer.SIZE - shardBits;
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = indexFactory.get();
+        }
+        // The account numbers are partitioned into as many chains as there are reference shards
+        this.accountChains = checkAccountChains ? new AccountChain[shards.length] : null;
+        for (int i = 0; checkAccountChains && i < accountChains.length; i++) {
+            accountChains[i] = new AccountChain();
+        }
+    }
+
+    private static ForkJoinPool newPool(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1, but was " + parallelism);
+        }
+        return new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * @param parallelism the number of threads used for validation
+     * @return the number of shards, and so the number of reference indexes created by the index factory
+     */
+    static int shardCount(int parallelism) {
+        // A few shards per thread evens out shards that happen to get more records
+        return 1 << (Integer.SIZE - Integer.numberOfLeadingZeros(parallelism * 4 - 1));
+    }
+
+    /**
+     * Validates a list of records on multiple threads, see {@link Validator#validateRecords(List)}.
+     *
+     * @param records A list of {@code Record} objects to be validated.
+     * @param parallelism the number of threads used for validation
+     * @return A list of {@code Record} objects that have failed validation, in the order of the input list.
+     */
+    public static ArrayList<Record> validateRecords(List<Record> records, int parallelism) {
+        try (ParallelValidator validator = new ParallelValidator(parallelism)) {
+            return validator.validateBatch(records);
+        }
+    }
+
+    /**
+     * Validates the next batch of records, taking into account the references of all earlier batches.
+     *
+     * @param records the records to validate, in file order
+     * @return the records that have failed validation, in the order of the input list
+     */
+    public ArrayList<Record> validateBatch(List<Record> records) {
+        List<Record> batch = records instanceof RandomAccess ? records : new ArrayList<>(records);
+        FailureReason[] reasons = validate(batch);
+        ArrayList<Record> failedRecords = new ArrayList<>();
+        for (int i = 0; i < reasons.length; i++) {
+            if (reasons[i] != null) {
+                failedRecords.add(batch.get(i));
+            }
+        }
+        return failedRecords;
+    }
+
+    /**
+     * Validates the next batch of records like {@link #validateBatch(List)}, and reports the failed records with
+     * the reason why they failed, in the order of the input list.
+     *
+     * @param records the records to validate, in file order
+     * @param report the report the failed records are written to
+     * @throws IOException if the report cannot be written
+     */
+    public void validateBatch(List<Record> records, ReportWriter report) throws IOException {
+        List<Record> batch = records instanceof RandomAccess ? records : new ArrayList<>(records);
+        FailureReason[] reasons = validate(batch);
+        for (int i = 0; i < reasons.length; i++) {
+            if (reasons[i] != null) {
+                report.report(batch.get(i), reasons[i]);
+            }
+        }
+    }
+
+    private FailureReason[] validate(List<Record> batch) {
+        int size = batch.size();
+        FailureReason[] reasons = new FailureReason[size];
+
+        // Phase 1: split the batch into blocks and, per block, collect the positions of the records of every shard
+        int blockCount = Math.max(1, Math.min(parallelism, size / MIN_RECORDS_PER_BLOCK));
+        int[][][] positions = new int[blockCount][][];
+        int[][][] accountPositions = new int[blockCount][][];
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int b = 0; b < blockCount; b++) {
+            int block = b;
+            tasks.add(() -> {
+                int from = (int) ((long) size * block / blockCount);
+                int to = (int) ((long) size * (block + 1) / blockCount);
+                positions[block] = partition(batch, from, to, this::shard);
+                if (accountChains != null) {
+                    accountPositions[block] = partition(batch, from, to, this::accountShard);
+                }
+                return null;
+            });
+        }
+        invokeAll(tasks);
+
+        // Phase 2: validate every shard on its own, visiting the blocks (and so the records) in file order
+        tasks.clear();
+        for (int s = 0; s < shards.length; s++) {
+            int shard = s;
+            tasks.add(() -> {
+                ReferenceIndex index = shards[shard];
+                for (int[][] block : positions) {
+                    for (int position : block[shard]) {
+                        Record record = batch.get(position);
+                        if (!index.add(record.getTransactionReference())) {
+                            reasons[position] = FailureReason.DUPLICATE_REFERENCE;
+                        } else if (!Validator.hasValidEndBalance(record)) {
+                            reasons[position] = FailureReason.BALANCE_MISMATCH;
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+        invokeAll(tasks);
+        if (accountChains == null) {
+            return reasons;
+        }
+
+        // Phase 3: check the chain of every account partition, visiting the records in file order
+        tasks.clear();
+        for (int p = 0; p < accountChains.length; p++) {
+            int partition = p;
+            tasks.add(() -> {
+                AccountChain chain = accountChains[partition];
+                for (int[][] block : accountPositions) {
+                    for (int position : block[partition]) {
+                        if (reasons[position] == FailureReason.DUPLICATE_REFERENCE) {
+                            continue;
+                        }
+                        // A balance mismatch takes precedence, but still moves the chain on
+                        if (!chain.follows(batch.get(position)) && reasons[position] == null) {
+                            reasons[position] = FailureReason.BROKEN_ACCOUNT_CHAIN;
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+        invokeAll(tasks);
+        return reasons;
+    }
+
+    private int[][] partition(List<Record> batch, int from, int to, ToIntFunction<Record> shardOf) {
+        int[] counts = new int[shards.length];
+        for (int i = from; i < to; i++) {
+            counts[shardOf.applyAsInt(batch.get(i))]++;
+        }
+        int[][] positions = new int[shards.length][];
+        for (int s = 0; s < shards.length; s++) {
+            positions[s] = new int[counts[s]];
+            counts[s] = 0;
+        }
+        for (int i = from; i < to; i++) {
+            int shard = shardOf.applyAsInt(batch.get(i));
+            positions[shard][counts[shard]++] = i;
+        }
+        return positions;
+    }
+
+    private int shard(Record record) {
+        // All references of a 64-bit bitmap word end up in the same shard
+        return IntHashReferenceIndex.mix(record.getTransactionReference() >>> 6) >>> shardShift;
+    }
+
+    private int accountShard(Record record) {
+        return IntHashReferenceIndex.mix(record.getAccountNumber().hashCode()) >>> shardShift;
+    }
+
+    private void invokeAll(List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while validating records", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Failed to validate records", e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (ownsPool) {
+            pool.shutdown();
+        }
+    }
+}
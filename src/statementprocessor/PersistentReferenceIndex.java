@@ -0,0 +1,249 @@
+// PersistentReferenceIndex.java
+package statementprocessor;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link ReferenceIndex} that is stored in a memory-mapped file, so transaction references are remembered across
+ * files and across runs: a reference that was processed last week is still flagged as a duplicate today.
+ * <p>
+ * The file holds a 4 KB header followed by a bitmap with one bit for every possible {@code int} reference (512 MB).
+ * The file is created sparse, so disk space is only used for the parts of the bitmap that contain references. The
+ * bitmap is mapped in segments of 64 MB when they are first needed: opening the store does not read the history,
+ * and a lookup is a single bit test, no matter how many references the history holds.
+ * </p>
+ * <p>
+ * The references of a statement file are first staged in a {@link Transaction}, and only added to the store when the
+ * file has been processed completely. A run that stops halfway, e.g. on a row that cannot be parsed, leaves the store
+ * as it was, so the same file can be processed again once it has been fixed. Staging costs a few bytes per new
+ * reference on the heap, until the transaction is committed.
+ * </p>
+ * Changes are written to the file by the operating system (the mapping is shared), so committed references are kept
+ * even when the run crashes later on; {@link #close()} forces them to disk. The store is thread-safe, so statement
+ * files that are processed concurrently can share it. The store keeps a registry of its open transactions, and a
+ * reference staged by one of them is a duplicate in all others, so duplicates between files that are processed at the
+ * same time are found as well: the file that adds the reference first keeps it.
+ */
+public class PersistentReferenceIndex implements ReferenceIndex, AutoCloseable {
+    private static final long MAGIC = 0x4143_4D45_5245_4631L; // "ACMEREF1"
+    private static final int HEADER_SIZE = 4096;
+    private static final int SIZE_OFFSET = Long.BYTES;
+    private static final int SEGMENT_BITS = 29;
+    private static final long SEGMENT_BYTES = 1L << (SEGMENT_BITS - 3);
+    private static final int SEGMENT_COUNT = 1 << (Integer.SIZE - SEGMENT_BITS);
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final MappedByteBuffer[] segments = new MappedByteBuffer[SEGMENT_COUNT];
+    private final Object[] locks = new Object[SEGMENT_COUNT];
+    private final AtomicLong size;
+    /** The open transactions; also the lock of their staged references. */
+    private final List<Transaction> transactions = new ArrayList<>();
+
+    /**
+     * Opens the store in the given file, creating it when it does not exist yet.
+     *
+     * @param file the file of the store
+     * @throws IOException if the file cannot be opened, or is not a reference store
+     */
+    public PersistentReferenceIndex(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean created = channel.size() == 0;
+            this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            if (created) {
+                header.putLong(0, MAGIC);
+                header.putLong(SIZE_OFFSET, 0);
+            } else if (header.getLong(0) != MAGIC) {
+                throw new IOException(file + " is not a transaction reference store");
+            }
+            this.size = new AtomicLong(header.getLong(SIZE_OFFSET));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public boolean add(int reference) {
+        long bit = reference & 0xFFFF_FFFFL;
+        int segmentIndex = (int) (bit >>> SEGMENT_BITS);
+        int byteIndex = (int) ((bit & ((1L << SEGMENT_BITS) - 1)) >>> 3);
+        int mask = 1 << (bit & 7);
+        synchronized (locks[segmentIndex]) {
+            MappedByteBuffer segment = segment(segmentIndex);
+            byte value = segment.get(byteIndex);
+            if ((value & mask) != 0) {
+                return false;
+            }
+            segment.put(byteIndex, (byte) (value | mask));
+        }
+        size.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public boolean contains(int reference) {
+        long bit = reference & 0xFFFF_FFFFL;
+        int segmentIndex = (int) (bit >>> SEGMENT_BITS);
+        int byteIndex = (int) ((bit & ((1L << SEGMENT_BITS) - 1)) >>> 3);
+        synchronized (locks[segmentIndex]) {
+            return (segment(segmentIndex).get(byteIndex) & (1 << (bit & 7))) != 0;
+        }
+    }
+
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    /**
+     * Starts staging the references of a statement file.
+     *
+     * @return the new transaction
+     */
+    public Transaction begin() {
+        Transaction transaction = new Transaction();
+        synchronized (transactions) {
+            transactions.add(transaction);
+        }
+        return transaction;
+    }
+
+    /**
+     * @return whether the reference is in the store or staged by an open transaction; must be called while holding
+     * the lock of the transactions
+     */
+    private boolean containsCommittedOrStaged(int reference) {
+        if (contains(reference)) {
+            return true;
+        }
+        for (Transaction transaction : transactions) {
+            for (IntHashReferenceIndex references : transaction.staged) {
+                if (references.contains(reference)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Maps a segment of the bitmap on first use. Must be called while holding the lock of the segment.
+     */
+    private MappedByteBuffer segment(int index) {
+        MappedByteBuffer segment = segments[index];
+        if (segment == null) {
+            try {
+                // Mapping past the end of the file grows the (sparse) file
+                segment = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + index * SEGMENT_BYTES, SEGMENT_BYTES);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not map the transaction reference store " + file, e);
+            }
+            segments[index] = segment;
+        }
+        return segment;
+    }
+
+    /**
+     * Writes all changes to disk.
+     */
+    public void flush() {
+        header.putLong(SIZE_OFFSET, size.get());
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            synchronized (locks[i]) {
+                if (segments[i] != null) {
+                    segments[i].force();
+                }
+            }
+        }
+        header.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    /**
+     * The references of a single statement file, staged until the file has been processed. A transaction hands out
+     * one {@link ReferenceIndex} per validator (or per shard of a {@link ParallelValidator}): a reference is new when
+     * it is neither in the store nor staged by any open transaction. A transaction is closed when its file is done;
+     * closing a transaction that has not been committed discards its references.
+     */
+    public final class Transaction implements AutoCloseable {
+        private final List<IntHashReferenceIndex> staged = new ArrayList<>();
+
+        private Transaction() {
+        }
+
+        /**
+         * @return a new index that stages the references added to it in this transaction
+         */
+        public ReferenceIndex newIndex() {
+            IntHashReferenceIndex references = new IntHashReferenceIndex();
+            synchronized (transactions) {
+                staged.add(references);
+            }
+            return new ReferenceIndex() {
+                @Override
+                public boolean add(int reference) {
+                    synchronized (transactions) {
+                        return !containsCommittedOrStaged(reference) && references.add(reference);
+                    }
+                }
+
+                @Override
+                public boolean contains(int reference) {
+                    synchronized (transactions) {
+                        return containsCommittedOrStaged(reference);
+                    }
+                }
+
+                @Override
+                public long size() {
+                    synchronized (transactions) {
+                        return PersistentReferenceIndex.this.size() + references.size();
+                    }
+                }
+            };
+        }
+
+        /**
+         * Adds the staged references to the store, once the statement file has been processed completely.
+         */
+        public void commit() {
+            synchronized (transactions) {
+                for (IntHashReferenceIndex references : staged) {
+                    references.forEach(PersistentReferenceIndex.this::add);
+                }
+                staged.clear();
+            }
+        }
+
+        /**
+         * Removes the transaction from the registry of the store, discarding the references that have not been
+         * committed.
+         */
+        @Override
+        public void close() {
+            synchronized (transactions) {
+                staged.clear();
+                transactions.remove(this);
+            }
+        }
+    }
+}
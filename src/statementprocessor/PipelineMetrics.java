@@ -0,0 +1,243 @@
+// PipelineMetrics.java
+package statementprocessor;
+
+import java.io.IOException;
+
+/**
+ * Counters and stage timings of one run of the {@link StatementPipeline} over a statement file.
+ * <p>
+ * The pipeline interleaves its stages record by record, so the time spent in every stage is measured with
+ * {@link System#nanoTime()} at the stage boundaries: the time spent reading (and parsing) records, and the time spent
+ * writing failed records to the report. Whatever remains of the elapsed time was spent validating. That costs two
+ * clock reads per record and two per failed record, so the stages are only timed when asked for, see
+ * {@link #isTimed()}; the counters and the elapsed time are always collected.
+ * </p>
+ * Every {@link StatementPipeline#BATCH_SIZE} records a {@link RecordBatchEvent} is committed for Java Flight Recorder,
+ * and a {@link StatementFileEvent} for the whole file.
+ * Not thread-safe: every pipeline has its own instance, which can be added to the {@link RunMetrics} of the run.
+ */
+public class PipelineMetrics {
+    private final long[] failedCounts = new long[FailureReason.values().length];
+    private boolean timed;
+    private long records;
+    private long readNanos;
+    private long reportNanos;
+    private long elapsedNanos;
+    private long startNanos;
+    private StatementFileEvent fileEvent;
+    private RecordBatchEvent batchEvent;
+    private int batchRecords;
+    private long batchFailedCount;
+
+    /**
+     * Creates metrics that time the stages of the pipeline.
+     */
+    public PipelineMetrics() {
+        this(true);
+    }
+
+    /**
+     * @param timed whether the stages of the pipeline are timed; they are also timed while Java Flight Recorder
+     *              records {@link StatementFileEvent}s
+     */
+    public PipelineMetrics(boolean timed) {
+        this.timed = timed;
+    }
+
+    /**
+     * Marks the start of the pipeline.
+     */
+    void start() {
+        startNanos = System.nanoTime();
+        fileEvent = new StatementFileEvent();
+        timed |= fileEvent.isEnabled();
+        fileEvent.begin();
+        batchEvent = new RecordBatchEvent();
+        batchEvent.begin();
+    }
+
+    /**
+     * @return whether the stages are timed; the pipeline checks this once, before its loop, and only reads the
+     * clock per record when it is set
+     */
+    boolean isTimed() {
+        return timed;
+    }
+
+    /**
+     * Adds the time spent reading a record, or finding out that there are no more records.
+     */
+    void addReadNanos(long nanos) {
+        readNanos += nanos;
+    }
+
+    /**
+     * Counts a record that was read. The failures of the record must be reported before the next record is counted,
+     * so they end up in the same {@link RecordBatchEvent}.
+     */
+    void countRecord() {
+        if (batchRecords == StatementPipeline.BATCH_SIZE) {
+            commitBatchEvent();
+        }
+        records++;
+        batchRecords++;
+    }
+
+    /**
+     * Counts a batch of records that was read at once, once its failures have been reported.
+     */
+    void countRecords(int count) {
+        records += count;
+        batchRecords += count;
+        commitBatchEvent();
+    }
+
+    /**
+     * Marks the end of the pipeline.
+     */
+    void finish() {
+        elapsedNanos = System.nanoTime() - startNanos;
+        fileEvent.end();
+        if (batchRecords > 0) {
+            commitBatchEvent();
+        }
+    }
+
+    private void commitBatchEvent() {
+        if (batchEvent.shouldCommit()) {
+            batchEvent.records = batchRecords;
+            batchEvent.failedRecords = batchFailedCount;
+            batchEvent.commit();
+        }
+        batchRecords = 0;
+        batchFailedCount = 0;
+        batchEvent = new RecordBatchEvent();
+        batchEvent.begin();
+    }
+
+    /**
+     * Commits a {@link StatementFileEvent} for the pipeline, when Java Flight Recorder records it.
+     *
+     * @param file the path of the statement file
+     * @param bytes the number of bytes of the file that were processed
+     */
+    void commitFileEvent(String file, long bytes) {
+        if (fileEvent != null && fileEvent.shouldCommit()) {
+            fileEvent.file = file;
+            fileEvent.bytes = bytes;
+            fileEvent.records = records;
+            long failed = 0;
+            for (long count : failedCounts) {
+                failed += count;
+            }
+            fileEvent.failedRecords = failed;
+            fileEvent.readNanos = readNanos;
+            fileEvent.validateNanos = getValidateNanos();
+            fileEvent.reportNanos = reportNanos;
+            fileEvent.commit();
+        }
+    }
+
+    /**
+     * Wraps the report, so the time spent writing failed records and the failures per reason are counted.
+     *
+     * @param report the report of the pipeline
+     * @return the metered report
+     */
+    ReportWriter meter(ReportWriter report) {
+        return new MeteredReportWriter(report);
+    }
+
+    /**
+     * @return the number of records that were read
+     */
+    public long getRecords() { return records; }
+
+    /**
+     * @param reason a failure reason
+     * @return the number of failed records reported for that reason
+     */
+    public long getFailedCount(FailureReason reason) { return failedCounts[reason.ordinal()]; }
+
+    /**
+     * @return the nanoseconds spent reading and parsing records
+     */
+    public long getReadNanos() { return readNanos; }
+
+    /**
+     * @return the nanoseconds spent validating records
+     */
+    public long getValidateNanos() { return Math.max(0, elapsedNanos - readNanos - reportNanos); }
+
+    /**
+     * @return the nanoseconds spent writing failed records to the report
+     */
+    public long getReportNanos() { return reportNanos; }
+
+    /**
+     * @return the nanoseconds the whole pipeline took
+     */
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    private final class MeteredReportWriter implements ReportWriter {
+        private final ReportWriter delegate;
+
+        private MeteredReportWriter(ReportWriter delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void start() throws IOException {
+            delegate.start();
+        }
+
+        @Override
+        public void resume(long failedCount) throws IOException {
+            delegate.resume(failedCount);
+        }
+
+        @Override
+        public void report(Record record, FailureReason reason) throws IOException {
+            if (timed) {
+                long start = System.nanoTime();
+                delegate.report(record, reason);
+                reportNanos += System.nanoTime() - start;
+            } else {
+                delegate.report(record, reason);
+            }
+            if (reason != null) {
+                failedCounts[reason.ordinal()]++;
+            }
+            batchFailedCount++;
+        }
+
+        @Override
+        public void setSource(String source) throws IOException {
+            delegate.setSource(source);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            long start = System.nanoTime();
+            delegate.finish();
+            if (timed) {
+                reportNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public long getFailedCount() {
+            return delegate.getFailedCount();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,442 @@
+// ProcessorOptions.java
+package statementprocessor;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * The command line options of the {@link CustomerStatementProcessor}.
+ * <p>
+ * Options start with {@code --} and may carry a value after an {@code =} sign, e.g. {@code --parallel=8}.
+ * The single remaining argument is the path of the file to process, or a directory or glob pattern for batch mode.
+ * </p>
+ */
+class ProcessorOptions {
+    static final String USAGE = "Usage: CustomerStatementProcessor [--parallel[=threads] | --mmap] [--reference-index=hash|bitmap|offheap]"
+            + " [--reference-store=path]"
+            + " [--parallel-validation[=threads]] [--report-format=" + ReportWriter.FORMATS + "] [--report-file=path]"
+            + " [--async-report] [--max-concurrent-files=n] [--checkpoint=path] [--checkpoint-interval=records]"
+            + " [--lenient] [--quarantine-file=path] [--metrics[=path]]"
+            + " [--convert=file.acol]"
+            + " [--account-chains] [--serve[=port]]"
+            + " <file.csv|file.xml|file.acol|directory|glob>";
+    static final int DEFAULT_SERVE_PORT = 8080;
+
+    private String filePath;
+    private int parallelism;
+    private boolean memoryMapped;
+    private String referenceIndex = "hash";
+    private String referenceStorePath;
+    private PersistentReferenceIndex referenceStore;
+    private int validationParallelism;
+    private String reportFormat = "text";
+    private String reportFile;
+    private boolean asyncReport;
+    private int maxConcurrentFiles = Runtime.getRuntime().availableProcessors();
+    private String checkpointFile;
+    private long checkpointInterval = CheckpointProcessor.DEFAULT_INTERVAL;
+    private boolean lenient;
+    private String quarantineFile;
+    private QuarantineWriter quarantine;
+    private boolean metricsEnabled;
+    private String metricsFile;
+    private final RunMetrics metrics = new RunMetrics();
+    private String convertFile;
+    private int servePort = -1;
+    private boolean accountChains;
+
+    /**
+     * Parses the command line arguments.
+     *
+     * @param args the command line arguments
+     * @return the parsed options; the file path is {@code null} when it was not given
+     * @throws IllegalArgumentException if an option is unknown or has an invalid value
+     */
+    static ProcessorOptions parse(String[] args) {
+        ProcessorOptions options = new ProcessorOptions();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                if (options.filePath != null) {
+                    throw new IllegalArgumentException("Only one file can be processed at a time. " + USAGE);
+                }
+                options.filePath = arg;
+                continue;
+            }
+            int separator = arg.indexOf('=');
+            String name = separator < 0 ? arg.substring(2) : arg.substring(2, separator);
+            String value = separator < 0 ? null : arg.substring(separator + 1);
+            switch (name) {
+                case "parallel":
+                    options.parallelism = value == null
+                            ? Runtime.getRuntime().availableProcessors()
+                            : positiveInt(name, value);
+                    break;
+                case "mmap":
+                    options.memoryMapped = true;
+                    break;
+                case "parallel-validation":
+                    options.validationParallelism = value == null
+                            ? Runtime.getRuntime().availableProcessors()
+                            : positiveInt(name, value);
+                    break;
+                case "report-format":
+                    if (value == null || !Arrays.asList(ReportWriter.FORMATS.split("\\|")).contains(value)) {
+                        throw new IllegalArgumentException("Option --report-format expects " + ReportWriter.FORMATS + ". " + USAGE);
+                    }
+                    options.reportFormat = value;
+                    break;
+                case "report-file":
+                    options.reportFile = required(name, value);
+                    break;
+                case "async-report":
+                    options.asyncReport = true;
+                    break;
+                case "max-concurrent-files":
+                    options.maxConcurrentFiles = positiveInt(name, value);
+                    break;
+                case "reference-index":
+                    if (value == null || !(value.equals("hash") || value.equals("bitmap") || value.equals("offheap"))) {
+                        throw new IllegalArgumentException("Option --reference-index expects hash, bitmap or offheap. " + USAGE);
+                    }
+                    options.referenceIndex = value;
+                    break;
+                case "reference-store":
+                    options.referenceStorePath = required(name, value);
+                    break;
+                case "checkpoint":
+                    options.checkpointFile = required(name, value);
+                    break;
+                case "checkpoint-interval":
+                    options.checkpointInterval = positiveInt(name, value);
+                    break;
+                case "lenient":
+                    options.lenient = true;
+                    break;
+                case "quarantine-file":
+                    options.quarantineFile = required(name, value);
+                    options.lenient = true;
+                    break;
+                case "metrics":
+                    options.metricsEnabled = true;
+                    options.metricsFile = value == null ? null : required(name, value);
+                    break;
+                case "convert":
+                    options.convertFile = required(name, value);
+                    break;
+                case "account-chains":
+                    options.accountChains = true;
+                    break;
+                case "serve":
+                    options.servePort = value == null ? DEFAULT_SERVE_PORT : port(name, value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option --" + name + ". " + USAGE);
+            }
+        }
+        if (options.servePort >= 0 && (options.filePath != null || options.checkpointFile != null
+                || options.convertFile != null || options.reportFile != null || options.asyncReport)) {
+            // Submitted statements are read from the request and reported in the response
+            throw new IllegalArgumentException("Option --serve cannot be combined with a file, --checkpoint, --convert,"
+                    + " --report-file or --async-report. " + USAGE);
+        }
+        if (options.parallelism > 0 && options.memoryMapped) {
+            throw new IllegalArgumentException("Options --parallel and --mmap cannot be combined. " + USAGE);
+        }
+        if (options.convertFile != null && options.checkpointFile != null) {
+            throw new IllegalArgumentException("Options --convert and --checkpoint cannot be combined. " + USAGE);
+        }
+        if (options.checkpointFile != null && (options.parallelism > 0 || options.memoryMapped
+                || options.validationParallelism > 0 || options.asyncReport || options.referenceStorePath != null
+                || options.accountChains)) {
+            // Checkpoints need a single reader and validator whose state is saved in the checkpoint itself
+            throw new IllegalArgumentException("Option --checkpoint cannot be combined with --parallel, --mmap,"
+                    + " --parallel-validation, --async-report, --reference-store or --account-chains. " + USAGE);
+        }
+        if (options.checkpointFile != null && options.filePath != null && BatchProcessor.isBatch(options.filePath)) {
+            // A checkpoint tracks the offset in a single file
+            throw new IllegalArgumentException("Option --checkpoint processes a single CSV file, not a directory or glob pattern. " + USAGE);
+        }
+        return options;
+    }
+
+    private static String required(String name, String value) {
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Option --" + name + " expects a value, e.g. --" + name + "=value. " + USAGE);
+        }
+        return value;
+    }
+
+    private static int positiveInt(String name, String value) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Option --" + name + " expects a positive number, but got: " + value);
+    }
+
+    private static int port(String name, String value) {
+        try {
+            int port = Integer.parseInt(value);
+            if (port >= 0 && port <= 65535) {
+                return port;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Option --" + name + " expects a port number, but got: " + value);
+    }
+
+    /**
+     * @return the path of the file to process, or {@code null} when it was not given
+     */
+    String getFilePath() { return filePath; }
+    void setFilePath(String filePath) { this.filePath = filePath; }
+
+    /**
+     * @return the number of threads used to parse CSV files, or 0 to parse on the calling thread
+     */
+    int getParallelism() { return parallelism; }
+
+    /**
+     * @return whether CSV files are read through a memory-mapped, allocation-free tokenizer
+     */
+    boolean isMemoryMapped() { return memoryMapped; }
+
+    /**
+     * @return the number of threads used to validate records, or 0 to validate on the calling thread
+     */
+    int getValidationParallelism() { return validationParallelism; }
+
+    /**
+     * @return the maximum number of statement files processed at the same time in batch mode
+     */
+    int getMaxConcurrentFiles() { return maxConcurrentFiles; }
+
+    /**
+     * @return the checkpoint file given with {@code --checkpoint}, or {@code null} to process without checkpoints
+     */
+    String getCheckpointFile() { return checkpointFile; }
+
+    /**
+     * @return the number of records between two checkpoints
+     */
+    long getCheckpointInterval() { return checkpointInterval; }
+
+    /**
+     * @return the report file given with {@code --report-file}, or {@code null} when the report is written to the
+     * standard output
+     */
+    String getReportFile() { return reportFile; }
+
+    /**
+     * @return the current length of the report file in bytes
+     * @throws IOException if the length cannot be determined
+     */
+    long getReportFileLength() throws IOException {
+        return Files.size(Paths.get(reportFile));
+    }
+
+    /**
+     * @return the columnar file the statement file is converted to with {@code --convert}, or {@code null} to
+     * validate the statement file
+     */
+    String getConvertFile() { return convertFile; }
+
+    /**
+     * @return the port the {@link StatementServer} listens on with {@code --serve}, 0 for any free port, or -1 to
+     * process the statement file given on the command line
+     */
+    int getServePort() { return servePort; }
+
+    /**
+     * @return whether the balance chain of every account is checked, see {@link AccountChain}
+     */
+    boolean isAccountChains() { return accountChains; }
+
+    /**
+     * @return the format of the report, one of {@link ReportWriter#FORMATS}
+     */
+    String getReportFormat() { return reportFormat; }
+
+    /**
+     * @return the metrics of the run, collected whether or not they are printed
+     */
+    RunMetrics getMetrics() { return metrics; }
+
+    /**
+     * @return whether a summary of the metrics is printed at the end of the run, see {@code --metrics}
+     */
+    boolean isMetricsEnabled() { return metricsEnabled; }
+
+    /**
+     * Creates the metrics of a single statement, which only time the stages of the pipeline when the metrics are
+     * printed or served.
+     *
+     * @return the new metrics
+     */
+    PipelineMetrics newPipelineMetrics() {
+        return new PipelineMetrics(metricsEnabled || servePort >= 0);
+    }
+
+    /**
+     * @return the file the metrics are written to in the Prometheus text format, or {@code null}
+     */
+    String getMetricsFile() { return metricsFile; }
+
+    /**
+     * Opens the quarantine output for {@code --lenient}: the file given with {@code --quarantine-file}, or the
+     * standard error. With {@code --checkpoint} the file is appended to, so a resumed run keeps the rows quarantined
+     * before the interruption.
+     *
+     * @return the quarantine writer, which must be closed by the caller, or {@code null} when not reading leniently
+     * @throws IOException if the quarantine file cannot be created
+     */
+    QuarantineWriter openQuarantine() throws IOException {
+        if (lenient) {
+            quarantine = new QuarantineWriter(quarantineFile == null
+                    ? AbstractReportWriter.bufferedWriter(System.err, false)
+                    : AbstractReportWriter.bufferedWriter(new FileOutputStream(quarantineFile, checkpointFile != null), true));
+        }
+        return quarantine;
+    }
+
+    /**
+     * Makes the reader lenient when a quarantine has been opened with {@link #openQuarantine()}.
+     *
+     * @param reader the reader of the statement file
+     * @param filePath the path of the statement file
+     */
+    void applyQuarantine(RecordReader reader, String filePath) {
+        if (quarantine != null) {
+            reader.setQuarantine(quarantine.forSource(filePath));
+        }
+    }
+
+    /**
+     * Opens the persistent reference store given with {@code --reference-store}. Once opened, all validators share
+     * the store instead of getting their own index, see {@link #newReferenceIndex()}.
+     *
+     * @return the store, which must be closed by the caller, or {@code null} when no store was given
+     * @throws IOException if the store cannot be opened
+     */
+    PersistentReferenceIndex openReferenceStore() throws IOException {
+        if (referenceStorePath != null) {
+            referenceStore = new PersistentReferenceIndex(Paths.get(referenceStorePath));
+        }
+        return referenceStore;
+    }
+
+    /**
+     * Creates an empty index for the transaction references seen by a validator, of the type selected with
+     * {@code --reference-index}.
+     *
+     * @return the new reference index
+     */
+    ReferenceIndex newReferenceIndex() {
+        switch (referenceIndex) {
+            case "bitmap":
+                return new BitmapReferenceIndex();
+            case "offheap":
+                return new OffHeapReferenceIndex();
+            default:
+                return new IntHashReferenceIndex();
+        }
+    }
+
+    /**
+     * Creates the factory of the reference indexes of the shards of a {@link ParallelValidator}, so the shards
+     * together take no more memory than a single {@link #newReferenceIndex()}: the shards share one bitmap, and the
+     * off-heap tables start at their share of the default size.
+     *
+     * @param parallelism the number of threads of the validator
+     * @param references the transaction of the statement in the reference store, or {@code null} without a store
+     * @return the factory of the shard indexes
+     */
+    Supplier<ReferenceIndex> newShardReferenceIndexes(int parallelism, PersistentReferenceIndex.Transaction references) {
+        if (references != null) {
+            return references::newIndex;
+        }
+        switch (referenceIndex) {
+            case "bitmap":
+                BitmapReferenceIndex shared = new BitmapReferenceIndex();
+                return () -> shared;
+            case "offheap":
+                long expectedSize = OffHeapReferenceIndex.DEFAULT_EXPECTED_SIZE / ParallelValidator.shardCount(parallelism);
+                return () -> new OffHeapReferenceIndex(expectedSize);
+            default:
+                return IntHashReferenceIndex::new;
+        }
+    }
+
+    /**
+     * Starts a transaction for the references of a single statement in the reference store, see
+     * {@code --reference-store}.
+     *
+     * @return the new transaction, to be committed once the statement has been processed and closed in any case, or
+     * {@code null} when no reference store has been opened
+     */
+    PersistentReferenceIndex.Transaction beginReferences() {
+        return referenceStore == null ? null : referenceStore.begin();
+    }
+
+    /**
+     * Creates a validator for a single statement, with a {@link #newReferenceIndex()} or an index of the reference
+     * store and, with {@code --account-chains}, a new {@link AccountChain}.
+     *
+     * @param references the transaction of the statement in the reference store, or {@code null} without a store
+     * @return the new validator
+     */
+    Validator newValidator(PersistentReferenceIndex.Transaction references) {
+        return new Validator(references != null ? references.newIndex() : newReferenceIndex(),
+                accountChains ? new AccountChain() : null);
+    }
+
+    /**
+     * Opens the report writer selected with {@code --report-format}, writing to the file given with
+     * {@code --report-file} or to the standard output, and on a background thread with {@code --async-report}.
+     *
+     * @return the report writer, which must be closed by the caller
+     * @throws IOException if the report file cannot be created
+     */
+    ReportWriter openReportWriter() throws IOException {
+        Writer out = reportFile == null
+                ? AbstractReportWriter.consoleWriter(System.out)
+                : AbstractReportWriter.bufferedWriter(new FileOutputStream(reportFile), true);
+        return openReportWriter(out);
+    }
+
+    /**
+     * Opens the report writer to continue the report file given with {@code --report-file} after an interrupted
+     * run: the file is cut back to the given length and appended to. The caller must call
+     * {@link ReportWriter#resume(long)} instead of {@link ReportWriter#start()}.
+     *
+     * @param length the length of the report file at the last checkpoint
+     * @return the report writer, which must be closed by the caller
+     * @throws IOException if the report file cannot be opened
+     */
+    ReportWriter openReportWriter(long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(reportFile), StandardOpenOption.WRITE)) {
+            if (channel.size() < length) {
+                throw new IOException("The report file " + reportFile + " is shorter than at the checkpoint");
+            }
+            channel.truncate(length);
+        }
+        return openReportWriter(AbstractReportWriter.bufferedWriter(new FileOutputStream(reportFile, true), true));
+    }
+
+    private ReportWriter openReportWriter(Writer out) {
+        ReportWriter writer = ReportWriter.create(reportFormat, out);
+        return asyncReport ? new AsyncReportWriter(writer) : writer;
+    }
+}
@@ -0,0 +1,40 @@
+// Quarantine.java
+package statementprocessor;
+
+import java.io.IOException;
+
+/**
+ * Receives the rows of a statement file that cannot be parsed, when a {@link RecordReader} reads leniently.
+ * <p>
+ * A lenient reader hands every row that it cannot turn into a {@link Record} to its quarantine and continues with the
+ * next row, instead of aborting with a {@link NumberFormatException} or silently dropping the row.
+ * </p>
+ *
+ * @see RecordReader#setQuarantine(Quarantine)
+ * @see QuarantineWriter
+ */
+@FunctionalInterface
+public interface Quarantine {
+    /**
+     * Quarantines a row.
+     *
+     * @param location where the row is in the statement file, e.g. {@code "line 12"} or {@code "byte 4096"}
+     * @param text the text of the row as it appears in the file
+     * @param cause why the row cannot be parsed
+     * @throws IOException if the row cannot be written to the quarantine
+     */
+    void add(String location, String text, String cause) throws IOException;
+
+    /**
+     * Describes a parse error, for the cause of a quarantined row.
+     *
+     * @param e the error thrown while parsing the row
+     * @return the description of the error
+     */
+    static String describe(RuntimeException e) {
+        if (e instanceof NumberFormatException) {
+            return "Invalid number: " + e.getMessage();
+        }
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,58 @@
+// QuarantineWriter.java
+package statementprocessor;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes quarantined rows as JSON Lines, one object per row, e.g.
+ * <pre>
+ * {"file":"statements.csv","location":"line 12","cause":"Invalid number: For input string: \"1O.00\"","text":"..."}
+ * </pre>
+ * One writer can collect the quarantined rows of several statement files, also when they are read concurrently:
+ * every file gets its own {@link Quarantine} through {@link #forSource(String)}.
+ */
+public class QuarantineWriter implements AutoCloseable {
+    private final Writer out;
+    private long count;
+
+    /**
+     * @param out the writer to write the quarantined rows to, closed when this writer is closed
+     */
+    public QuarantineWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * @param source the path of the statement file
+     * @return the quarantine for the rows of the given statement file
+     */
+    public Quarantine forSource(String source) {
+        return (location, text, cause) -> write(source, location, text, cause);
+    }
+
+    private synchronized void write(String source, String location, String text, String cause) throws IOException {
+        count++;
+        out.write("{\"file\":");
+        JsonLinesReportWriter.writeString(out, source);
+        out.write(",\"location\":");
+        JsonLinesReportWriter.writeString(out, location);
+        out.write(",\"cause\":");
+        JsonLinesReportWriter.writeString(out, cause);
+        out.write(",\"text\":");
+        JsonLinesReportWriter.writeString(out, text);
+        out.write("}\n");
+    }
+
+    /**
+     * @return the number of rows quarantined so far
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+}
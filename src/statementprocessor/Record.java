@@ -2,8 +2,6 @@
 package statementprocessor;
 
 import java.math.BigDecimal;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Represents a financial record containing information about a specific transaction.
@@ -13,11 +11,19 @@ import java.util.regex.Pattern;
  * this type provides precise handling of decimal values without the rounding errors
  * associated with floating-point types like float or double.
  * <p>
+ * Next to the BigDecimal values the amounts are also kept as a number of cents in a {@code long}, which makes
+ * validating the balance a few integer operations. Amounts that cannot be represented exactly in cents (more than
+ * two decimals, or very large amounts) are marked with {@link FixedPoint#NOT_REPRESENTABLE}, in which case the
+ * BigDecimal values have to be used.
+ * </p>
+ * <p>
  * Instances of this class are used to store transaction data that can be read from
  * CSV or XML files and processed further for validation and reporting.
  * </p>
  */
 public class Record {
+    private static final long[] CENTS_PER_UNIT = {100, 10, 1};
+
     private final int transactionReference;
     private final String accountNumber;
     private final BigDecimal startBalance;
@@ -25,20 +31,28 @@ public class Record {
     private final BigDecimal mutationAmount;
     private final String description;
     private final BigDecimal endBalance;
+    private final long startBalanceCents;
+    private final long mutationAmountCents;
+    private final long endBalanceCents;
 
     public Record(int transactionReference, String accountNumber, String description, BigDecimal startBalance,
                   String mutation,  BigDecimal endBalance) {
-        if (!isValidFormat(mutation)) {
-            throw new IllegalArgumentException("Invalid value format: " + mutation);
-        }
         this.transactionReference = transactionReference;
         this.accountNumber = accountNumber;
         this.startBalance = startBalance;
-        this.mutationType = mutation.charAt(0);
-        this.mutationAmount = new BigDecimal(mutation.substring(1));
+
+        // A mutation without a sign, e.g. "16.97", is a positive mutation
+        boolean hasSign = !mutation.isEmpty() && (mutation.charAt(0) == '+' || mutation.charAt(0) == '-');
+        int amountStart = hasSign ? 1 : 0;
+        this.mutationType = hasSign ? mutation.charAt(0) : '+';
+        this.mutationAmountCents = FixedPoint.parseUnsignedCents(mutation, amountStart, mutation.length());
+        this.mutationAmount = parseMutationAmount(mutation, amountStart, mutationAmountCents);
 
         this.description = description;
         this.endBalance = endBalance;
+
+        this.startBalanceCents = FixedPoint.toCents(startBalance);
+        this.endBalanceCents = FixedPoint.toCents(endBalance);
     }
 
     public int getTransactionReference() { return transactionReference; }
@@ -48,13 +62,33 @@ public class Record {
     public BigDecimal getMutationAmount() { return mutationAmount; }
     public String getDescription() { return description; }
     public BigDecimal getEndBalance() { return endBalance; }
+    public long getStartBalanceCents() { return startBalanceCents; }
+    public long getMutationAmountCents() { return mutationAmountCents; }
+    public long getEndBalanceCents() { return endBalanceCents; }
+
+    /**
+     * @return {@code true} if all amounts of this record are available in cents
+     */
+    public boolean hasFixedPointAmounts() {
+        return startBalanceCents != FixedPoint.NOT_REPRESENTABLE && mutationAmountCents != FixedPoint.NOT_REPRESENTABLE
+                && endBalanceCents != FixedPoint.NOT_REPRESENTABLE;
+    }
 
-    private boolean isValidFormat(String format) {
-        // Regular expression to match values like "+99.33" or "-12.00"
-        String regex = "^[+-]?\\d+(\\.\\d{1,2})?$";
-        Pattern pattern = Pattern.compile(regex);
-        Matcher matcher = pattern.matcher(format);
-        return matcher.matches();
+    /**
+     * Creates the mutation amount for a mutation like "+99.33", "-12.00" or "7", keeping the number of decimals
+     * that was written. The amount has already been parsed into cents, unless it has too many digits for that or
+     * is not a valid amount at all.
+     */
+    private static BigDecimal parseMutationAmount(String mutation, int amountStart, long cents) {
+        if (cents != FixedPoint.NOT_REPRESENTABLE) {
+            int separator = mutation.indexOf('.', amountStart);
+            int scale = separator < 0 ? 0 : mutation.length() - separator - 1;
+            return BigDecimal.valueOf(cents / CENTS_PER_UNIT[scale], scale);
+        }
+        if (!FixedPoint.isUnsignedAmount(mutation, amountStart, mutation.length())) {
+            throw new IllegalArgumentException("Invalid value format: " + mutation);
+        }
+        return new BigDecimal(mutation.substring(amountStart));
     }
 
     @Override
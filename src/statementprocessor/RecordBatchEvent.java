@@ -0,0 +1,24 @@
+// RecordBatchEvent.java
+package statementprocessor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event for a batch of records that went through the {@link StatementPipeline}. Its duration is
+ * the time it took to read, validate and report the batch.
+ */
+@Name("statementprocessor.RecordBatch")
+@Label("Record Batch")
+@Category("Statement Processor")
+@Description("A batch of records read, validated and reported by the statement pipeline")
+class RecordBatchEvent extends Event {
+    @Label("Records")
+    int records;
+
+    @Label("Failed Records")
+    long failedRecords;
+}
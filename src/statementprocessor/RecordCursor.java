@@ -0,0 +1,64 @@
+// RecordCursor.java
+package statementprocessor;
+
+import java.io.IOException;
+
+/**
+ * A {@link RecordReader} that can also be used as a cursor: {@link #advance()} moves to the next record, after which
+ * its transaction reference and amounts (in cents, see {@link FixedPoint}) can be read without creating a
+ * {@link Record}. The {@link StatementPipeline} validates cursors that way, and only creates records for the rows
+ * that have to be reported.
+ *
+ * @see MappedCsvRecordReader
+ * @see ColumnarRecordReader
+ */
+public interface RecordCursor extends RecordReader {
+    /**
+     * Moves the cursor to the next record.
+     *
+     * @return {@code true} if the cursor is on a record, {@code false} at the end of the input
+     * @throws IOException if the input cannot be read
+     */
+    boolean advance() throws IOException;
+
+    /**
+     * @return the transaction reference of the current record
+     * @throws NumberFormatException if the reference is not a valid integer
+     */
+    int reference() throws NumberFormatException;
+
+    /**
+     * @return the start balance of the current record in cents, or {@link FixedPoint#NOT_REPRESENTABLE}
+     */
+    long startBalanceCents();
+
+    /**
+     * @return the signed mutation of the current record in cents, or {@link FixedPoint#NOT_REPRESENTABLE}
+     */
+    long mutationCents();
+
+    /**
+     * @return the end balance of the current record in cents, or {@link FixedPoint#NOT_REPRESENTABLE}
+     */
+    long endBalanceCents();
+
+    /**
+     * Creates a {@link Record} for the current record.
+     *
+     * @return the record
+     * @throws IOException if the fields of the record cannot be read
+     * @throws NumberFormatException if there is an error parsing numerical values of the record
+     */
+    Record toRecord() throws IOException, NumberFormatException;
+
+    /**
+     * Hands the current record to the quarantine, when reading leniently.
+     *
+     * @param cause the error thrown while parsing the current record
+     * @return {@code true} if the record was quarantined, {@code false} if the cursor is not lenient
+     * @throws IOException if the record cannot be written to the quarantine
+     */
+    default boolean quarantine(RuntimeException cause) throws IOException {
+        return false;
+    }
+}
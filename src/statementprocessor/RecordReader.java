@@ -0,0 +1,34 @@
+// RecordReader.java
+package statementprocessor;
+
+import java.io.IOException;
+
+/**
+ * A pull-based source of {@link Record} objects.
+ * <p>
+ * Implementations read a single record at a time from the underlying file, so only the record that is
+ * currently being processed has to be kept in memory, regardless of the size of the input.
+ * </p>
+ */
+public interface RecordReader extends AutoCloseable {
+    /**
+     * Reads the next record from the input.
+     *
+     * @return the next {@link Record}, or {@code null} when the end of the input has been reached
+     * @throws IOException if an I/O error occurs or the input is not a well-formed statement file
+     * @throws NumberFormatException if there is an error parsing numerical values
+     */
+    Record next() throws IOException, NumberFormatException;
+
+    /**
+     * Makes the reader lenient: rows that cannot be parsed, including CSV rows with the wrong number of columns, are
+     * handed to the quarantine and skipped, instead of aborting with a {@link NumberFormatException} or being dropped
+     * silently. Errors that make the rest of the input unreadable, such as XML that is not well-formed, still abort.
+     *
+     * @param quarantine the quarantine for the rows that cannot be parsed
+     */
+    void setQuarantine(Quarantine quarantine);
+
+    @Override
+    void close() throws IOException;
+}
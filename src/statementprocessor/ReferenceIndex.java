@@ -0,0 +1,35 @@
+// ReferenceIndex.java
+package statementprocessor;
+
+/**
+ * A set of transaction references, used by the {@link Validator} to detect duplicates.
+ * <p>
+ * The references are kept as primitive {@code int}s. The implementations differ in how they store them:
+ * </p>
+ * <ul>
+ *     <li>{@link IntHashReferenceIndex}: an open addressing hash set on the heap, the default.</li>
+ *     <li>{@link BitmapReferenceIndex}: one bit per possible reference, compact for dense reference ranges.</li>
+ *     <li>{@link OffHeapReferenceIndex}: an open addressing hash set in direct memory, outside of the Java heap.</li>
+ *     <li>{@link PersistentReferenceIndex}: a bitmap in a memory-mapped file, kept across runs.</li>
+ * </ul>
+ */
+public interface ReferenceIndex {
+    /**
+     * Adds a reference to the index.
+     *
+     * @param reference the transaction reference
+     * @return {@code true} if the reference was not in the index yet
+     */
+    boolean add(int reference);
+
+    /**
+     * @param reference the transaction reference
+     * @return {@code true} if the reference is in the index
+     */
+    boolean contains(int reference);
+
+    /**
+     * @return the number of references in the index
+     */
+    long size();
+}
@@ -1,14 +1,41 @@
 // ReportGenerator.java
 package statementprocessor;
 
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.List;
 
 /**
  * This class is responsible for generating a report of failed records.
  * It prints the failed records to the standard output. If there are no failed records,
  * it prints a message indicating that no failed records were found.
+ * <p>
+ * A {@code ReportGenerator} instance is the plain text {@link ReportWriter}: {@link #start()} prints the header,
+ * {@link #report(Record, FailureReason)} prints a failed record (and why it failed) as soon as it has been found,
+ * and {@link #finish()} completes the report. The output is buffered, and flushed periodically when printing to a
+ * stream.
+ * </p>
  */
-public class ReportGenerator {
+public class ReportGenerator extends AbstractReportWriter {
+    /**
+     * Creates a report generator that prints to the given stream. Closing the generator does not close the stream.
+     *
+     * @param out the stream to print the report to
+     */
+    public ReportGenerator(PrintStream out) {
+        this(consoleWriter(out));
+    }
+
+    /**
+     * Creates a report generator that writes to the given writer.
+     *
+     * @param out the writer to write the report to, closed when the generator is closed
+     */
+    public ReportGenerator(Writer out) {
+        super(out);
+    }
 
     /**
      * Generates a report of the failed records.
@@ -19,16 +46,55 @@ public class ReportGenerator {
      * @param failedRecords the list of records that failed validation
      */
     public static void generateReport(List<Record> failedRecords) {
-        // TODO: could easily be expanded to write the results to a location
-        // TODO: reason for failure would be a nice addition to this project, but requires some extra toughts as to
-        //       where stuff would need to be added.
-        System.out.println("Failed Records Report:");
-        if (failedRecords.isEmpty()) {
-            System.out.println("No failed records found.");
-            return;
+        try (ReportGenerator generator = new ReportGenerator(System.out)) {
+            generator.start();
+            for (Record record : failedRecords) {
+                generator.report(record);
+            }
+            generator.finish();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        for (Record record : failedRecords) {
-            System.out.println(record);
+    }
+
+    /**
+     * Prints a single failed record, without a reason.
+     *
+     * @param record the record that failed validation
+     * @throws IOException if the report cannot be written
+     */
+    public void report(Record record) throws IOException {
+        report(record, null);
+    }
+
+    @Override
+    protected void writeHeader() throws IOException {
+        out.write("Failed Records Report:");
+        out.write(System.lineSeparator());
+    }
+
+    @Override
+    protected void writeRecord(Record record, FailureReason reason) throws IOException {
+        out.write(record.toString());
+        if (reason != null) {
+            out.write(", Reason: ");
+            out.write(reason.getDescription());
+        }
+        out.write(System.lineSeparator());
+    }
+
+    @Override
+    protected void writeSource(String source) throws IOException {
+        out.write("Statement: ");
+        out.write(source);
+        out.write(System.lineSeparator());
+    }
+
+    @Override
+    protected void writeFooter() throws IOException {
+        if (getFailedCount() == 0) {
+            out.write("No failed records found.");
+            out.write(System.lineSeparator());
         }
     }
 }
@@ -0,0 +1,102 @@
+// ReportWriter.java
+package statementprocessor;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the report of failed records, one record at a time.
+ * <p>
+ * A report is written by calling {@link #start()} once, {@link #report(Record, FailureReason)} for every failed
+ * record, and {@link #finish()} once all records have been processed. Closing the writer closes its output.
+ * </p>
+ * The available formats are {@code text} ({@link ReportGenerator}), {@code csv} ({@link CsvReportWriter}) and
+ * {@code jsonl} ({@link JsonLinesReportWriter}). Any of them can be wrapped in an {@link AsyncReportWriter} to write
+ * the report on a background thread.
+ */
+public interface ReportWriter extends AutoCloseable {
+    /**
+     * The report formats accepted by {@link #create(String, Writer)}.
+     */
+    String FORMATS = "text|csv|jsonl";
+
+    /**
+     * Writes the start of the report.
+     *
+     * @throws IOException if the report cannot be written
+     */
+    void start() throws IOException;
+
+    /**
+     * Continues a report that was interrupted, instead of {@link #start()}: the start of the report is already in
+     * the output, which must be positioned at the end of the last failed record written before the interruption.
+     * Used to resume a run from a {@link Checkpoint}.
+     *
+     * @param failedCount the number of failed records reported before the interruption
+     * @throws IOException if the report cannot be written
+     */
+    void resume(long failedCount) throws IOException;
+
+    /**
+     * Writes a single failed record.
+     *
+     * @param record the record that failed validation
+     * @param reason the reason why it failed, or {@code null} if unknown
+     * @throws IOException if the report cannot be written
+     */
+    void report(Record record, FailureReason reason) throws IOException;
+
+    /**
+     * Tells which statement file the failed records reported next come from. Only used when a single report covers
+     * several statement files; by default the source is not part of the report.
+     *
+     * @param source the path of the statement file
+     * @throws IOException if the report cannot be written
+     */
+    default void setSource(String source) throws IOException {
+    }
+
+    /**
+     * Flushes the failed records reported so far to the output, so that a {@link Checkpoint} can record how far the
+     * report got.
+     *
+     * @throws IOException if the report cannot be written
+     */
+    void flush() throws IOException;
+
+    /**
+     * Writes the end of the report and flushes it.
+     *
+     * @throws IOException if the report cannot be written
+     */
+    void finish() throws IOException;
+
+    /**
+     * @return the number of failed records reported so far
+     */
+    long getFailedCount();
+
+    @Override
+    void close() throws IOException;
+
+    /**
+     * Creates a report writer for the given format.
+     *
+     * @param format one of {@link #FORMATS}
+     * @param out the output of the report, closed when the report writer is closed
+     * @return the report writer
+     * @throws IllegalArgumentException if the format is unknown
+     */
+    static ReportWriter create(String format, Writer out) {
+        switch (format) {
+            case "text":
+                return new ReportGenerator(out);
+            case "csv":
+                return new CsvReportWriter(out);
+            case "jsonl":
+                return new JsonLinesReportWriter(out);
+            default:
+                throw new IllegalArgumentException("Unknown report format " + format + ", expected one of " + FORMATS);
+        }
+    }
+}
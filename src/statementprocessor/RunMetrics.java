@@ -0,0 +1,225 @@
+// RunMetrics.java
+package statementprocessor;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+
+/**
+ * The metrics of a whole run: the {@link PipelineMetrics} of every processed statement file added up, plus the number
+ * of bytes read, the wall time, the peak heap usage and the time spent in garbage collection.
+ * <p>
+ * The metrics can be printed as a summary for humans with {@link #printSummary(PrintStream)}, and written in the
+ * Prometheus text format with {@link #writePrometheus(Path)}, for the textfile collector of the node exporter. While
+ * the run is still going on, e.g. in the {@link StatementServer}, {@link #snapshot()} takes the metrics so far.
+ * In batch mode the files are processed concurrently, so the stage times are summed over the files and can add up
+ * to more than the wall time. Thread-safe.
+ * </p>
+ */
+public class RunMetrics {
+    private static final String PREFIX = "statement_processor_";
+
+    private final long startNanos;
+    private final long gcStartMillis;
+    private final long[] failedCounts = new long[FailureReason.values().length];
+    private long files;
+    private long bytes;
+    private long records;
+    private long readNanos;
+    private long validateNanos;
+    private long reportNanos;
+    private long wallNanos;
+    private long gcMillis;
+    private long peakHeapBytes;
+
+    /**
+     * Starts measuring a run. The peak heap usage is measured from here on.
+     */
+    public RunMetrics() {
+        startNanos = System.nanoTime();
+        gcStartMillis = gcMillis();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * Copies the metrics of a run, see {@link #snapshot()}.
+     */
+    private RunMetrics(RunMetrics run) {
+        startNanos = run.startNanos;
+        gcStartMillis = run.gcStartMillis;
+        System.arraycopy(run.failedCounts, 0, failedCounts, 0, failedCounts.length);
+        files = run.files;
+        bytes = run.bytes;
+        records = run.records;
+        readNanos = run.readNanos;
+        validateNanos = run.validateNanos;
+        reportNanos = run.reportNanos;
+    }
+
+    /**
+     * Adds the metrics of a statement file.
+     *
+     * @param file the path of the statement file
+     * @param bytes the number of bytes of the file that were processed
+     * @param metrics the metrics of the pipeline that processed the file
+     */
+    public synchronized void add(String file, long bytes, PipelineMetrics metrics) {
+        metrics.commitFileEvent(file, bytes);
+        this.files++;
+        this.bytes += bytes;
+        this.records += metrics.getRecords();
+        this.readNanos += metrics.getReadNanos();
+        this.validateNanos += metrics.getValidateNanos();
+        this.reportNanos += metrics.getReportNanos();
+        for (FailureReason reason : FailureReason.values()) {
+            failedCounts[reason.ordinal()] += metrics.getFailedCount(reason);
+        }
+    }
+
+    /**
+     * Ends the run: takes the wall time, the garbage collection time and the peak heap usage.
+     */
+    public synchronized void finish() {
+        wallNanos = System.nanoTime() - startNanos;
+        gcMillis = gcMillis() - gcStartMillis;
+        // The pools peak at different moments, so their sum is an upper bound of the peak heap usage
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        peakHeapBytes = peak;
+    }
+
+    /**
+     * Takes the metrics of the run so far, with the wall time, the garbage collection time and the peak heap usage up
+     * to now, and leaves this run going on.
+     *
+     * @return the finished copy of the metrics
+     */
+    public synchronized RunMetrics snapshot() {
+        RunMetrics snapshot = new RunMetrics(this);
+        snapshot.finish();
+        return snapshot;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+     * @return the number of records read
+     */
+    public synchronized long getRecords() { return records; }
+
+    /**
+     * @param reason a failure reason
+     * @return the number of failed records reported for that reason
+     */
+    public synchronized long getFailedCount(FailureReason reason) { return failedCounts[reason.ordinal()]; }
+
+    /**
+     * @return the number of bytes of statement files read
+     */
+    public synchronized long getBytes() { return bytes; }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    private double perSecond(long count) {
+        return wallNanos == 0 ? 0 : count / seconds(wallNanos);
+    }
+
+    /**
+     * Prints a summary of the run.
+     *
+     * @param out the stream to print to
+     */
+    public synchronized void printSummary(PrintStream out) {
+        out.println("Run metrics:");
+        out.println(String.format(Locale.ROOT, "  Files: %d, records: %d, bytes: %d", files, records, bytes));
+        out.println(String.format(Locale.ROOT, "  Wall time: %.3f s (%.0f records/s, %.1f MB/s)",
+                seconds(wallNanos), perSecond(records), perSecond(bytes) / (1024 * 1024)));
+        out.println(String.format(Locale.ROOT, "  Stages: read %.3f s, validate %.3f s, report %.3f s",
+                seconds(readNanos), seconds(validateNanos), seconds(reportNanos)));
+        for (FailureReason reason : FailureReason.values()) {
+            out.println("  " + reason.getDescription() + ": " + failedCounts[reason.ordinal()]);
+        }
+        out.println(String.format(Locale.ROOT, "  Peak heap: %.1f MB, GC time: %.3f s",
+                peakHeapBytes / (1024.0 * 1024), gcMillis / 1e3));
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text format. The file is written next to its destination first and then
+     * moved, so a scraper never reads a half written file.
+     *
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void writePrometheus(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(temporary)) {
+            writePrometheus(out);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text format, e.g. to answer a scrape of the {@link StatementServer}.
+     *
+     * @param out the output, which is not closed
+     * @throws IOException if the metrics cannot be written
+     */
+    public synchronized void writePrometheus(Writer out) throws IOException {
+        metric(out, "files_total", "counter", "Statement files processed.", files);
+        metric(out, "records_total", "counter", "Records read.", records);
+        metric(out, "bytes_total", "counter", "Bytes of statement files read.", bytes);
+        metric(out, "duration_seconds", "gauge", "Wall time of the run.", seconds(wallNanos));
+        metric(out, "records_per_second", "gauge", "Records read per second of wall time.", perSecond(records));
+        metric(out, "bytes_per_second", "gauge", "Bytes read per second of wall time.", perSecond(bytes));
+        header(out, "stage_seconds", "gauge", "Time spent in every stage of the pipeline, summed over the files.");
+        sample(out, "stage_seconds{stage=\"read\"}", seconds(readNanos));
+        sample(out, "stage_seconds{stage=\"validate\"}", seconds(validateNanos));
+        sample(out, "stage_seconds{stage=\"report\"}", seconds(reportNanos));
+        header(out, "failed_records_total", "counter", "Failed records by reason.");
+        for (FailureReason reason : FailureReason.values()) {
+            sample(out, "failed_records_total{reason=\"" + reason.name() + "\"}", failedCounts[reason.ordinal()]);
+        }
+        metric(out, "heap_peak_bytes", "gauge", "Peak heap usage during the run.", peakHeapBytes);
+        metric(out, "gc_seconds", "gauge", "Time spent in garbage collection during the run.", gcMillis / 1e3);
+    }
+
+    private static void metric(Writer out, String name, String type, String help, double value) throws IOException {
+        header(out, name, type, help);
+        sample(out, name, value);
+    }
+
+    private static void header(Writer out, String name, String type, String help) throws IOException {
+        out.write("# HELP " + PREFIX + name + " " + help + "\n");
+        out.write("# TYPE " + PREFIX + name + " " + type + "\n");
+    }
+
+    private static void sample(Writer out, String name, double value) throws IOException {
+        out.write(PREFIX + name + " " + (value == Math.rint(value) && Math.abs(value) < 1e15
+                ? Long.toString((long) value)
+                : String.format(Locale.ROOT, "%.6f", value)) + "\n");
+    }
+}
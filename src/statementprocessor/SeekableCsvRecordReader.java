@@ -0,0 +1,138 @@
+// SeekableCsvRecordReader.java
+package statementprocessor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Streaming {@link RecordReader} for CSV statement files that keeps track of its byte offset in the file, and can
+ * start reading at a byte offset. Used to checkpoint and resume the processing of large files, see
+ * {@link CheckpointProcessor}.
+ * <p>
+ * Lines are parsed like {@link CsvRecordReader} does: the header is skipped when reading starts at the beginning of
+ * the file, and lines that do not have the expected six columns are skipped, or quarantined by byte offset when
+ * reading leniently.
+ * </p>
+ * A last line without a line break is not read: it may still be being written by another process, so it is left
+ * for a later run that starts at {@link #position()}, see {@link #hasIncompleteLine()}.
+ */
+public class SeekableCsvRecordReader implements RecordReader {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final Charset charset = Charset.defaultCharset();
+    private byte[] line = new byte[256];
+    private long readPosition;
+    private long position;
+    private boolean incompleteLine;
+    private Quarantine quarantine;
+
+    /**
+     * Opens the CSV file at the given path, positioned at the given byte offset.
+     *
+     * @param filePath the file path of the CSV file to read
+     * @param offset the byte offset to start reading at: 0 for the start of the file (before the header), or a
+     *               value returned by {@link #position()}
+     * @throws IOException if the file cannot be opened, or is shorter than the offset
+     */
+    public SeekableCsvRecordReader(String filePath, long offset) throws IOException {
+        this.channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        try {
+            if (offset > channel.size()) {
+                throw new IOException("The file " + filePath + " is shorter than the offset " + offset
+                        + "; it has been replaced or truncated");
+            }
+            channel.position(offset);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        buffer.flip();
+        this.readPosition = offset;
+        if (offset == 0) {
+            readLine();
+        }
+        this.position = readPosition;
+    }
+
+    @Override
+    public Record next() throws IOException, NumberFormatException {
+        String text;
+        while ((text = readLine()) != null) {
+            // The position only moves past a line once it has been parsed, so after an error it is still at the
+            // start of the line that caused it
+            Record record = FileReaderUtil.parseCSVLine(text, quarantine, "byte", position);
+            position = readPosition;
+            if (record != null) {
+                return record;
+            }
+        }
+        position = readPosition;
+        return null;
+    }
+
+    @Override
+    public void setQuarantine(Quarantine quarantine) {
+        this.quarantine = quarantine;
+    }
+
+    /**
+     * @return the byte offset just after the line of the last record returned by {@link #next()}, which is where
+     * reading can be resumed
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * @return {@code true} if {@link #next()} reached the end of the file in the middle of a line, which has been
+     * left unread
+     */
+    public boolean hasIncompleteLine() {
+        return incompleteLine;
+    }
+
+    private String readLine() throws IOException {
+        int length = 0;
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                buffer.clear();
+                int read = channel.read(buffer);
+                buffer.flip();
+                if (read < 0) {
+                    // Leave a line that has not been completed yet for the next run
+                    incompleteLine = length > 0;
+                    readPosition -= length;
+                    return null;
+                }
+            }
+            byte b = buffer.get();
+            readPosition++;
+            if (b == '\n') {
+                return toString(length);
+            }
+            if (length == line.length) {
+                line = Arrays.copyOf(line, length * 2);
+            }
+            line[length++] = b;
+        }
+    }
+
+    private String toString(int length) {
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        return new String(line, 0, length, charset);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,167 @@
+// SpillingReportWriter.java
+package statementprocessor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link ReportWriter} that holds the failed records of one statement until they can be written to the merged report
+ * of a {@link BatchProcessor}, see {@link #replayTo(ReportWriter)}.
+ * <p>
+ * The first {@value #DEFAULT_MEMORY_LIMIT} failed records are kept in memory. Once a statement has more, all of its
+ * failed records are spilled to a temporary file, so the heap used by the files of a batch is bounded no matter how
+ * many failures each of them has. The temporary file is removed when the writer is closed.
+ * </p>
+ */
+final class SpillingReportWriter implements ReportWriter {
+    static final int DEFAULT_MEMORY_LIMIT = 4096;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final int memoryLimit;
+    private final List<FailedRecord> failedRecords = new ArrayList<>();
+    private Path spillFile;
+    private DataOutputStream spill;
+    private long spilledCount;
+    private long resumedCount;
+
+    SpillingReportWriter() {
+        this(DEFAULT_MEMORY_LIMIT);
+    }
+
+    /**
+     * @param memoryLimit the number of failed records that are kept in memory before they are spilled
+     */
+    SpillingReportWriter(int memoryLimit) {
+        this.memoryLimit = memoryLimit;
+    }
+
+    @Override
+    public void start() {
+    }
+
+    /**
+     * Continues counting after the failed records of an interrupted run, which are not collected again.
+     */
+    @Override
+    public void resume(long failedCount) {
+        this.resumedCount = failedCount;
+    }
+
+    @Override
+    public void report(Record record, FailureReason reason) throws IOException {
+        if (spill == null && failedRecords.size() < memoryLimit) {
+            failedRecords.add(new FailedRecord(record, reason));
+            return;
+        }
+        if (spill == null) {
+            spillFile = Files.createTempFile("statement-failures", ".bin");
+            // Removed on close; also when the batch stops before this file's result has been written
+            spillFile.toFile().deleteOnExit();
+            spill = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spillFile), BUFFER_SIZE));
+            for (FailedRecord failedRecord : failedRecords) {
+                write(failedRecord.getRecord(), failedRecord.getReason());
+            }
+            failedRecords.clear();
+        }
+        write(record, reason);
+    }
+
+    private void write(Record record, FailureReason reason) throws IOException {
+        spill.writeInt(record.getTransactionReference());
+        writeText(record.getAccountNumber());
+        writeText(record.getDescription());
+        writeText(record.getStartBalance().toString());
+        writeText(record.getMutationType() + record.getMutationAmount().toPlainString());
+        writeText(record.getEndBalance().toString());
+        spill.writeByte(reason == null ? -1 : reason.ordinal());
+        spilledCount++;
+    }
+
+    private void writeText(String value) throws IOException {
+        if (value == null) {
+            spill.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        spill.writeInt(bytes.length);
+        spill.write(bytes);
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Does nothing, the failed records are written by {@link #replayTo(ReportWriter)}.
+     */
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void finish() {
+    }
+
+    @Override
+    public long getFailedCount() {
+        return resumedCount + failedRecords.size() + spilledCount;
+    }
+
+    /**
+     * Reports all failed records to the given report writer, in the order they were reported, without starting or
+     * finishing its report.
+     *
+     * @param report the report writer to write the failed records to
+     * @throws IOException if the spilled failed records cannot be read, or the report cannot be written
+     */
+    public void replayTo(ReportWriter report) throws IOException {
+        if (spill == null) {
+            for (FailedRecord failedRecord : failedRecords) {
+                report.report(failedRecord.getRecord(), failedRecord.getReason());
+            }
+            return;
+        }
+        spill.flush();
+        FailureReason[] reasons = FailureReason.values();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(spillFile), BUFFER_SIZE))) {
+            for (long i = 0; i < spilledCount; i++) {
+                int reference = in.readInt();
+                String accountNumber = readText(in);
+                String description = readText(in);
+                BigDecimal startBalance = new BigDecimal(readText(in));
+                String mutation = readText(in);
+                BigDecimal endBalance = new BigDecimal(readText(in));
+                int reason = in.readByte();
+                report.report(new Record(reference, accountNumber, description, startBalance, mutation, endBalance),
+                        reason < 0 ? null : reasons[reason]);
+            }
+        }
+    }
+
+    /**
+     * Removes the temporary file of the spilled failed records.
+     */
+    @Override
+    public void close() throws IOException {
+        if (spill != null) {
+            spill.close();
+            spill = null;
+            Files.deleteIfExists(spillFile);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+// StatementFileEvent.java
+package statementprocessor;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder event for a statement file that has been processed, with the time spent in every stage of the
+ * {@link StatementPipeline}.
+ */
+@Name("statementprocessor.StatementFile")
+@Label("Statement File")
+@Category("Statement Processor")
+@Description("A statement file processed by the statement pipeline")
+class StatementFileEvent extends Event {
+    @Label("File")
+    String file;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+
+    @Label("Records")
+    long records;
+
+    @Label("Failed Records")
+    long failedRecords;
+
+    @Label("Read Time")
+    @Timespan
+    long readNanos;
+
+    @Label("Validate Time")
+    @Timespan
+    long validateNanos;
+
+    @Label("Report Time")
+    @Timespan
+    long reportNanos;
+}
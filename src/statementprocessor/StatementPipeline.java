@@ -0,0 +1,205 @@
+// StatementPipeline.java
+package statementprocessor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Connects a {@link RecordReader}, a {@link Validator} and a {@link ReportWriter} into a streaming pipeline.
+ * <p>
+ * Records are pulled from the reader one at a time, validated and, when they fail validation, reported
+ * straight away. No list of records is ever built, so the memory usage is bounded by the state of the
+ * validator (the transaction references seen so far) and the first failures show up while the rest of the
+ * file is still being read.
+ * </p>
+ * Every run of the pipeline is measured in {@link PipelineMetrics}: the number of records, the failures per reason
+ * and, when the metrics are timed, the time spent in every stage.
+ */
+public class StatementPipeline {
+    /**
+     * The number of records read ahead and validated at once by a {@link ParallelValidator}.
+     */
+    static final int BATCH_SIZE = 64 * 1024;
+
+    /**
+     * Processes all records of the reader and writes a complete report, including header and footer.
+     *
+     * @param reader the source of the records
+     * @param validator the validator that decides which records failed
+     * @param report the report the failed records are written to
+     * @return the number of failed records
+     * @throws IOException if an I/O error occurs while reading the records or writing the report
+     * @throws NumberFormatException if there is an error parsing numerical values
+     */
+    public static long process(RecordReader reader, Validator validator, ReportWriter report)
+            throws IOException, NumberFormatException {
+        return process(reader, validator, report, new PipelineMetrics());
+    }
+
+    /**
+     * Processes all records of the reader like {@link #process(RecordReader, Validator, ReportWriter)}, and measures
+     * the pipeline.
+     *
+     * @param reader the source of the records
+     * @param validator the validator that decides which records failed
+     * @param report the report the failed records are written to
+     * @param metrics the metrics of the pipeline, updated while the records are processed
+     * @return the number of failed records
+     * @throws IOException if an I/O error occurs while reading the records or writing the report
+     * @throws NumberFormatException if there is an error parsing numerical values
+     */
+    public static long process(RecordReader reader, Validator validator, ReportWriter report, PipelineMetrics metrics)
+            throws IOException, NumberFormatException {
+        metrics.start();
+        report = metrics.meter(report);
+        // The account chains need the account number of every record, which the cursors do not parse
+        if (reader instanceof RecordCursor && !validator.checksAccountChains()) {
+            processCursor((RecordCursor) reader, validator, report, metrics);
+        } else {
+            report.start();
+            boolean timed = metrics.isTimed();
+            long readStart = timed ? System.nanoTime() : 0;
+            Record record;
+            while ((record = reader.next()) != null) {
+                if (timed) {
+                    metrics.addReadNanos(System.nanoTime() - readStart);
+                }
+                metrics.countRecord();
+                FailureReason reason = validator.validate(record);
+                if (reason != null) {
+                    report.report(record, reason);
+                }
+                if (timed) {
+                    readStart = System.nanoTime();
+                }
+            }
+            if (timed) {
+                metrics.addReadNanos(System.nanoTime() - readStart);
+            }
+            report.finish();
+        }
+        metrics.finish();
+        return report.getFailedCount();
+    }
+
+    /**
+     * Processes all records of the reader with a {@link ParallelValidator}. Records are read in batches of
+     * {@link #BATCH_SIZE}, and the failed records of every batch are reported in file order, so the report is
+     * the same as the one of the sequential {@link Validator}.
+     *
+     * @param reader the source of the records
+     * @param validator the parallel validator that decides which records failed
+     * @param report the report the failed records are written to
+     * @return the number of failed records
+     * @throws IOException if an I/O error occurs while reading the records or writing the report
+     * @throws NumberFormatException if there is an error parsing numerical values
+     */
+    public static long process(RecordReader reader, ParallelValidator validator, ReportWriter report)
+            throws IOException, NumberFormatException {
+        return process(reader, validator, report, new PipelineMetrics());
+    }
+
+    /**
+     * Processes all records of the reader like {@link #process(RecordReader, ParallelValidator, ReportWriter)}, and
+     * measures the pipeline.
+     *
+     * @param reader the source of the records
+     * @param validator the parallel validator that decides which records failed
+     * @param report the report the failed records are written to
+     * @param metrics the metrics of the pipeline, updated while the records are processed
+     * @return the number of failed records
+     * @throws IOException if an I/O error occurs while reading the records or writing the report
+     * @throws NumberFormatException if there is an error parsing numerical values
+     */
+    public static long process(RecordReader reader, ParallelValidator validator, ReportWriter report,
+                               PipelineMetrics metrics) throws IOException, NumberFormatException {
+        metrics.start();
+        report = metrics.meter(report);
+        report.start();
+        boolean timed = metrics.isTimed();
+        List<Record> batch = new ArrayList<>(BATCH_SIZE);
+        Record record;
+        do {
+            // Reading is timed per batch, the batch is validated at once anyway
+            long readStart = timed ? System.nanoTime() : 0;
+            do {
+                record = reader.next();
+                if (record != null) {
+                    batch.add(record);
+                }
+            } while (record != null && batch.size() < BATCH_SIZE);
+            if (timed) {
+                metrics.addReadNanos(System.nanoTime() - readStart);
+            }
+            if (!batch.isEmpty()) {
+                validator.validateBatch(batch, report);
+                metrics.countRecords(batch.size());
+                batch.clear();
+            }
+        } while (record != null);
+        report.finish();
+        metrics.finish();
+        return report.getFailedCount();
+    }
+
+    /**
+     * Fast path for {@link RecordCursor}s, such as memory-mapped CSV and columnar files: the reference and the
+     * amounts are checked straight from the mapped file and a {@link Record} is only created for rows that have to be
+     * reported, or whose amounts cannot be checked in cents (those are validated by
+     * {@link Validator#hasValidEndBalance(Record)} instead).
+     */
+    private static void processCursor(RecordCursor reader, Validator validator, ReportWriter report,
+                                      PipelineMetrics metrics) throws IOException, NumberFormatException {
+        report.start();
+        boolean timed = metrics.isTimed();
+        long readStart = timed ? System.nanoTime() : 0;
+        while (reader.advance()) {
+            if (timed) {
+                metrics.addReadNanos(System.nanoTime() - readStart);
+            }
+            int reference;
+            long startBalance;
+            long mutation;
+            long endBalance;
+            Record record = null;
+            try {
+                // Parse the whole row before its reference is recorded, so a row that is quarantined leaves no trace
+                reference = reader.reference();
+                startBalance = reader.startBalanceCents();
+                mutation = reader.mutationCents();
+                endBalance = reader.endBalanceCents();
+                if (startBalance == FixedPoint.NOT_REPRESENTABLE || mutation == FixedPoint.NOT_REPRESENTABLE
+                        || endBalance == FixedPoint.NOT_REPRESENTABLE) {
+                    record = reader.toRecord();
+                }
+            } catch (IllegalArgumentException e) {
+                if (reader.quarantine(e)) {
+                    if (timed) {
+                        readStart = System.nanoTime();
+                    }
+                    continue;
+                }
+                throw e;
+            }
+            metrics.countRecord();
+            if (!validator.hasUniqueReference(reference)) {
+                report.report(record != null ? record : reader.toRecord(), FailureReason.DUPLICATE_REFERENCE);
+            } else if (record != null) {
+                // Amounts that cannot be checked in cents
+                if (!Validator.hasValidEndBalance(record)) {
+                    report.report(record, FailureReason.BALANCE_MISMATCH);
+                }
+            } else if (!FixedPoint.isBalanced(startBalance, mutation, endBalance)) {
+                report.report(reader.toRecord(), FailureReason.BALANCE_MISMATCH);
+            }
+            if (timed) {
+                readStart = System.nanoTime();
+            }
+        }
+        if (timed) {
+            metrics.addReadNanos(System.nanoTime() - readStart);
+        }
+        report.finish();
+    }
+}
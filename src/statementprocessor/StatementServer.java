@@ -0,0 +1,370 @@
+// StatementServer.java
+package statementprocessor;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Resident validation service: validates statements submitted over HTTP, so every statement is processed by a warm
+ * JVM instead of paying for a JVM start and JIT warm-up.
+ * <p>
+ * {@code POST /validate} takes a CSV or XML statement as the request body and answers with the report of its failed
+ * records. XML is recognized by a {@code Content-Type} containing {@code xml}; unless the {@code Content-Type}
+ * contains {@code csv}, a body that starts with {@code <} is XML as well, so statements posted with a generic type such
+ * as {@code application/x-www-form-urlencoded} are still read correctly. A CSV statement with rows of which none has
+ * the six CSV columns is rejected with {@code 400 Bad Request} instead of being reported as a clean statement. The report format can be chosen with the {@code format} query parameter ({@code text}, {@code csv} or
+ * {@code jsonl}), and defaults to {@code --report-format}. Every statement gets its own {@link Validator}, unless a
+ * {@code --reference-store} is shared by all of them. {@code GET /metrics} returns the {@link RunMetrics} of all
+ * statements so far in the Prometheus text format.
+ * </p>
+ * Concurrent submissions are queued for a fixed number of worker threads, so a burst of small statements is handled
+ * by a bounded number of threads. A worker that is free takes a batch of small submissions from the queue at once, but
+ * never more than its share of the queued submissions, so the other workers are not left idle; every submission of a
+ * batch is answered as soon as it has been validated. The number of submissions that are being read, queued or
+ * validated is bounded: once the limit is reached, submissions are rejected with {@code 503 Service Unavailable}
+ * before their body is read. With {@code --parallel-validation} all submissions share one validation pool, so
+ * concurrent submissions do not each start their own validation threads.
+ */
+public class StatementServer implements AutoCloseable {
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final int MAX_BATCH_SIZE = 32;
+    private static final int MAX_BATCH_BYTES = 256 * 1024;
+    private static final int MAX_STATEMENT_SIZE = 64 * 1024 * 1024;
+    private static final Response SHUTTING_DOWN = new Response(503, "The server is shutting down.\n");
+    /** Queued when the server is closed, to wake up the workers that are waiting for a submission. */
+    private static final Submission CLOSED = new Submission(null, new byte[0], false, null);
+
+    private final ProcessorOptions options;
+    private final HttpServer server;
+    private final ExecutorService requestExecutor;
+    private final int workerCount;
+    private final ExecutorService workers;
+    private final ForkJoinPool validationPool;
+    private final int maxPending;
+    private final Semaphore admission;
+    private final BlockingQueue<Submission> queue = new LinkedBlockingQueue<>();
+    private final ReentrantLock batching = new ReentrantLock();
+    private volatile boolean closed;
+
+    /**
+     * Creates the server; it accepts submissions once it has been started.
+     *
+     * @param options the options used to validate the statements and write the reports
+     * @param address the address to listen on, e.g. a loopback address
+     * @param workers the number of statements validated at the same time
+     * @throws IOException if the server cannot listen on the address
+     */
+    public StatementServer(ProcessorOptions options, InetSocketAddress address, int workers) throws IOException {
+        this(options, address, workers, workers + QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param maxPending the number of submissions that can be read, queued or validated at the same time
+     */
+    StatementServer(ProcessorOptions options, InetSocketAddress address, int workers, int maxPending) throws IOException {
+        this.options = options;
+        this.server = HttpServer.create(address, 0);
+        this.requestExecutor = BatchProcessor.newExecutor(workers * 4);
+        this.workerCount = workers;
+        this.workers = Executors.newFixedThreadPool(workers);
+        this.maxPending = maxPending;
+        this.admission = new Semaphore(maxPending);
+        this.validationPool = options.getValidationParallelism() > 0
+                ? new ForkJoinPool(options.getValidationParallelism()) : null;
+        server.setExecutor(requestExecutor);
+        server.createContext("/validate", this::handleValidate);
+        server.createContext("/metrics", this::handleMetrics);
+    }
+
+    /**
+     * Starts accepting submissions.
+     */
+    public void start() {
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::work);
+        }
+        server.start();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return the number of submissions that are being read, queued or validated
+     */
+    int getPendingCount() {
+        return maxPending - admission.availablePermits();
+    }
+
+    private void handleValidate(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            reject(exchange, 405, "Use POST to submit a statement.\n");
+            return;
+        }
+        String format = queryParameter(exchange.getRequestURI(), "format", options.getReportFormat());
+        if (!Arrays.asList(ReportWriter.FORMATS.split("\\|")).contains(format)) {
+            reject(exchange, 400, "Unknown report format " + format + ", expected one of " + ReportWriter.FORMATS + ".\n");
+            return;
+        }
+        // Checked before the body is read, so a flood of submissions is turned away without buffering their bodies
+        if (!admission.tryAcquire()) {
+            reject(exchange, 503, "Too many statements are waiting, try again later.\n");
+            return;
+        }
+        Submission submission = null;
+        try {
+            byte[] body = readBody(exchange.getRequestBody());
+            if (body == null) {
+                reject(exchange, 413, "Statements are limited to " + MAX_STATEMENT_SIZE + " bytes.\n");
+                return;
+            }
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            submission = new Submission(exchange, body, isXml(contentType, body), format);
+            queue.add(submission);
+        } finally {
+            if (submission == null) {
+                exchange.close();
+                admission.release();
+            }
+        }
+        // The submission is answered by a worker, unless the server has been closed in the meantime
+        if (closed && queue.remove(submission)) {
+            answer(submission, SHUTTING_DOWN);
+        }
+    }
+
+    private static void reject(HttpExchange exchange, int status, String body) throws IOException {
+        try (exchange) {
+            respond(exchange, status, body);
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            StringWriter out = new StringWriter();
+            // A scrape reads the metrics so far, the run goes on
+            options.getMetrics().snapshot().writePrometheus(out);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+            respond(exchange, 200, out.toString());
+        }
+    }
+
+    private static String queryParameter(URI uri, String name, String defaultValue) {
+        String query = uri.getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith(name + "=")) {
+                    return parameter.substring(name.length() + 1);
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    private static byte[] readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            if (body.size() + read > MAX_STATEMENT_SIZE) {
+                return null;
+            }
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
+    }
+
+    private static boolean isXml(String contentType, byte[] body) {
+        if (contentType != null && contentType.contains("xml")) {
+            return true;
+        }
+        if (contentType != null && contentType.contains("csv")) {
+            return false;
+        }
+        for (byte b : body) {
+            if (!Character.isWhitespace(b)) {
+                return b == '<';
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether the CSV body has a non-blank line after its header
+     */
+    private static boolean hasCsvRows(byte[] body) {
+        int i = 0;
+        while (i < body.length && body[i] != '\n') {
+            i++;
+        }
+        for (; i < body.length; i++) {
+            if (!Character.isWhitespace(body[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        if (!exchange.getResponseHeaders().containsKey("Content-Type")) {
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Validates batches of submissions until the server is closed.
+     */
+    private void work() {
+        List<Submission> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        try {
+            while (takeBatch(batch)) {
+                for (Submission submission : batch) {
+                    answer(submission, closed ? SHUTTING_DOWN : validate(submission));
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for a submission, and adds the small submissions behind it up to this worker's share of the queue.
+     *
+     * @return {@code false} if the server has been closed
+     */
+    private boolean takeBatch(List<Submission> batch) throws InterruptedException {
+        batching.lockInterruptibly();
+        try {
+            Submission first = queue.take();
+            if (first == CLOSED) {
+                // Left for the other workers
+                queue.add(CLOSED);
+                return false;
+            }
+            batch.add(first);
+            // The workers take turns, so every worker that is free gets its share of the queued submissions
+            int share = Math.min(MAX_BATCH_SIZE, 1 + queue.size() / workerCount);
+            long bytes = first.body.length;
+            Submission next;
+            while (batch.size() < share && (next = queue.peek()) != null && next != CLOSED
+                    && bytes + next.body.length <= MAX_BATCH_BYTES) {
+                batch.add(queue.poll());
+                bytes += next.body.length;
+            }
+            return true;
+        } finally {
+            batching.unlock();
+        }
+    }
+
+    private void answer(Submission submission, Response response) {
+        try (HttpExchange exchange = submission.exchange) {
+            respond(exchange, response.status, response.body);
+        } catch (IOException e) {
+            // The client is gone, there is no one to answer
+        } finally {
+            admission.release();
+        }
+    }
+
+    private Response validate(Submission submission) {
+        String source = submission.xml ? "statement.xml" : "statement.csv";
+        StringWriter out = new StringWriter();
+        try (RecordReader reader = submission.xml
+                ? new XmlRecordReader(new ByteArrayInputStream(submission.body))
+                : new CsvRecordReader(new InputStreamReader(new ByteArrayInputStream(submission.body), StandardCharsets.UTF_8));
+             ReportWriter report = ReportWriter.create(submission.format, out)) {
+            options.applyQuarantine(reader, source);
+            long records = CustomerStatementProcessor.process(source, submission.body.length, reader, report, options,
+                    validationPool);
+            if (records == 0 && !submission.xml && hasCsvRows(submission.body)) {
+                return new Response(400, "Error: The statement has no rows with the six CSV columns.\n");
+            }
+        } catch (MalformedStatementException e) {
+            return new Response(400, "Error: The statement is not a valid statement file. " + e.getMessage() + "\n");
+        } catch (IllegalArgumentException e) {
+            return new Response(400, "Error: The statement contains an invalid record. " + Quarantine.describe(e) + "\n");
+        } catch (IOException | RuntimeException e) {
+            return new Response(500, "Error processing statements: " + e.getMessage() + "\n");
+        }
+        return new Response(200, out.toString());
+    }
+
+    /**
+     * Stops accepting submissions, and stops the server once the submissions being processed have been answered.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        server.stop(1);
+        // Submissions that are still queued are answered as rejected instead of waiting forever
+        Submission queued;
+        while ((queued = queue.poll()) != null) {
+            if (queued != CLOSED) {
+                answer(queued, SHUTTING_DOWN);
+            }
+        }
+        // The workers finish the submissions they are validating, without being interrupted
+        queue.add(CLOSED);
+        workers.shutdown();
+        requestExecutor.shutdownNow();
+        if (validationPool != null) {
+            validationPool.shutdown();
+        }
+    }
+
+    private static final class Submission {
+        private final HttpExchange exchange;
+        private final byte[] body;
+        private final boolean xml;
+        private final String format;
+
+        private Submission(HttpExchange exchange, byte[] body, boolean xml, String format) {
+            this.exchange = exchange;
+            this.body = body;
+            this.xml = xml;
+            this.format = format;
+        }
+    }
+
+    private static final class Response {
+        private final int status;
+        private final String body;
+
+        private Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+// StringCache.java
+package statementprocessor;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bounded cache that deduplicates the text fields of records, such as account numbers and descriptions.
+ * <p>
+ * A statement file has far fewer distinct account numbers and descriptions than records, but every parsed
+ * {@link Record} would otherwise keep its own copies of them. Readers pass these fields through the cache, so
+ * records with the same account number share one {@code String}, which cuts the retained heap whenever records are
+ * held in memory (lists, batches of the {@link ParallelValidator}, chunks of the {@link ParallelCsvRecordReader}).
+ * </p>
+ * <p>
+ * The cache is direct-mapped: every value has one slot, chosen by its hash, and a value that maps to an occupied slot
+ * evicts the value in it. Its memory usage is therefore fixed, and values that do not repeat (e.g. unique
+ * descriptions) just pass through. Unlike {@link String#intern()} the cached strings are ordinary heap objects.
+ * </p>
+ * Thread-safe without locking: slots are read and written racily, which is safe because strings are immutable, and
+ * at worst a lost update costs a duplicate copy.
+ */
+final class StringCache {
+    /**
+     * The cache shared by the readers of all statement files, so also files with the same accounts share strings.
+     */
+    static final StringCache SHARED = new StringCache(1 << 14);
+
+    private final String[] slots;
+    private final int mask;
+
+    /**
+     * @param capacity the number of slots, rounded up to a power of two
+     */
+    StringCache(int capacity) {
+        slots = new String[Integer.highestOneBit(Math.max(2, capacity) - 1) << 1];
+        mask = slots.length - 1;
+    }
+
+    /**
+     * Returns the cached string equal to the value, or caches the value itself.
+     *
+     * @param value the value, may be {@code null}
+     * @return a string equal to the value
+     */
+    String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        int slot = IntHashReferenceIndex.mix(value.hashCode()) & mask;
+        String cached = slots[slot];
+        if (value.equals(cached)) {
+            return cached;
+        }
+        slots[slot] = value;
+        return value;
+    }
+
+    /**
+     * Returns the cached string for the bytes between two positions of a buffer. When the string is in the cache and
+     * its bytes are ASCII, no string or byte array is created.
+     *
+     * @param buffer the buffer, e.g. a memory-mapped file
+     * @param from the absolute position of the first byte
+     * @param to the absolute position after the last byte
+     * @param charset the charset of the bytes
+     * @return the string decoded from the bytes
+     */
+    String intern(ByteBuffer buffer, int from, int to, Charset charset) {
+        boolean asciiCompatible = charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII)
+                || charset.equals(StandardCharsets.ISO_8859_1);
+        int hash = 0;
+        for (int i = from; asciiCompatible && i < to; i++) {
+            byte b = buffer.get(i);
+            // ASCII bytes are the chars themselves, so this is the hash of the decoded string
+            asciiCompatible = b >= 0;
+            hash = 31 * hash + b;
+        }
+        if (!asciiCompatible) {
+            return intern(decode(buffer, from, to, charset));
+        }
+        int slot = IntHashReferenceIndex.mix(hash) & mask;
+        String cached = slots[slot];
+        if (cached != null && matches(cached, buffer, from, to)) {
+            return cached;
+        }
+        String value = decode(buffer, from, to, charset);
+        slots[slot] = value;
+        return value;
+    }
+
+    private static boolean matches(String cached, ByteBuffer buffer, int from, int to) {
+        if (cached.length() != to - from) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (cached.charAt(i - from) != buffer.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String decode(ByteBuffer buffer, int from, int to, Charset charset) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes, 0, bytes.length);
+        return new String(bytes, charset);
+    }
+}
@@ -2,14 +2,62 @@
 package statementprocessor;
 
 import java.math.BigDecimal;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The {@code Validator} class provides methods for validating a list of {@code Record} objects.
  * It ensures that each record has a unique transaction reference and that the calculated end balance
  * matches the reported end balance based on the start balance, mutation type and mutation amount.
+ * <p>
+ * Besides the list based {@link #validateRecords(List)}, a {@code Validator} instance can validate records
+ * one at a time as they are read, see {@link #validate(Record)}. The instance only remembers the transaction
+ * references it has seen, which is the only state needed to detect duplicates. How those references are stored
+ * is up to the {@link ReferenceIndex} the validator is created with.
+ * </p>
+ * A validator can also check the balance chain of every account with an {@link AccountChain}: the start balance of
+ * a record must match the end balance of the previous record of the same account. The records must then be
+ * validated in file order.
  */
 public class Validator {
+    private final ReferenceIndex uniqueReferences;
+    private final AccountChain accountChain;
+
+    /**
+     * Creates a validator that keeps the seen transaction references in an {@link IntHashReferenceIndex}.
+     */
+    public Validator() {
+        this(new IntHashReferenceIndex());
+    }
+
+    /**
+     * Creates a validator that keeps the seen transaction references in the given index.
+     *
+     * @param uniqueReferences the index of seen transaction references
+     */
+    public Validator(ReferenceIndex uniqueReferences) {
+        this(uniqueReferences, null);
+    }
+
+    /**
+     * Creates a validator that keeps the seen transaction references in the given index, and checks the balance
+     * chain of every account.
+     *
+     * @param uniqueReferences the index of seen transaction references
+     * @param accountChain the chain of every account, or {@code null} to check every record on its own
+     */
+    public Validator(ReferenceIndex uniqueReferences, AccountChain accountChain) {
+        this.uniqueReferences = uniqueReferences;
+        this.accountChain = accountChain;
+    }
+
+    /**
+     * @return {@code true} if this validator checks the balance chain of every account
+     */
+    public boolean checksAccountChains() {
+        return accountChain != null;
+    }
+
     /**
      * Validates a list of records by checking the uniqueness of transaction references and
      * ensuring that the mutation results in the correct end balance.
@@ -19,28 +67,108 @@ public class Validator {
      *         containing duplicate transaction references or incorrect end balances.
      */
     public static ArrayList<Record> validateRecords(List<Record> records) {
-        // TODO: split up the validations into separate methods, this makes it more readable/extensible
-        //   when adding more validations later
-        Set<Integer> uniqueReferences = new HashSet<>();
+        Validator validator = new Validator();
         ArrayList<Record> failedRecords = new ArrayList<>();
 
         for (Record record : records) {
-            if (!uniqueReferences.add(record.getTransactionReference())) {
+            if (validator.validate(record) != null) {
                 failedRecords.add(record);
-                continue;
             }
+        }
+        return failedRecords;
+    }
+
+    /**
+     * Validates a single record against the records this validator has seen before.
+     * The first record with a given transaction reference is accepted, every later one is a duplicate.
+     *
+     * @param record the record to validate
+     * @return {@code true} if the record passed all validations, {@code false} otherwise
+     */
+    public boolean isValid(Record record) {
+        return validate(record) == null;
+    }
+
+    /**
+     * Validates a single record against the records this validator has seen before, like {@link #isValid(Record)},
+     * and tells why the record failed.
+     *
+     * @param record the record to validate
+     * @return the reason why the record failed validation, or {@code null} if it passed all validations
+     */
+    public FailureReason validate(Record record) {
+        if (!hasUniqueReference(record)) {
+            return FailureReason.DUPLICATE_REFERENCE;
+        }
+        return validateBalances(record, accountChain);
+    }
+
+    /**
+     * Checks the balances of a record that is not a duplicate: its end balance and, when a chain is given, whether
+     * it continues the chain of its account. The chain is moved on even when the end balance does not match.
+     *
+     * @param record the record to check
+     * @param accountChain the chain of the account of the record, or {@code null}
+     * @return the reason why the balances are wrong, or {@code null} if they are right
+     */
+    static FailureReason validateBalances(Record record, AccountChain accountChain) {
+        boolean follows = accountChain == null || accountChain.follows(record);
+        if (!hasValidEndBalance(record)) {
+            return FailureReason.BALANCE_MISMATCH;
+        }
+        return follows ? null : FailureReason.BROKEN_ACCOUNT_CHAIN;
+    }
+
+    /**
+     * Checks that the transaction reference of the record has not been seen before by this validator,
+     * and remembers it for the records that follow.
+     *
+     * @param record the record to check
+     * @return {@code true} if this is the first record with its transaction reference
+     */
+    public boolean hasUniqueReference(Record record) {
+        return hasUniqueReference(record.getTransactionReference());
+    }
+
+    /**
+     * Checks that the transaction reference has not been seen before by this validator,
+     * and remembers it for the records that follow.
+     *
+     * @param transactionReference the transaction reference to check
+     * @return {@code true} if this is the first occurrence of the transaction reference
+     */
+    public boolean hasUniqueReference(int transactionReference) {
+        return uniqueReferences.add(transactionReference);
+    }
 
-            BigDecimal calculatedEndBalance = record.getStartBalance();
+    /**
+     * Checks that applying the mutation to the start balance results in the reported end balance.
+     * The amounts are compared by value, so e.g. {@code 550.0} and {@code 550.00} are equal.
+     * <p>
+     * When all amounts are available in cents the check is done with {@code long} arithmetic,
+     * otherwise it falls back to exact {@link BigDecimal} arithmetic.
+     * </p>
+     *
+     * @param record the record to check
+     * @return {@code true} if the end balance matches
+     */
+    public static boolean hasValidEndBalance(Record record) {
+        if (record.hasFixedPointAmounts()) {
+            long mutation = 0;
             if (record.getMutationType() == '+') {
-                calculatedEndBalance = calculatedEndBalance.add(record.getMutationAmount());
+                mutation = record.getMutationAmountCents();
             } else if (record.getMutationType() == '-') {
-                calculatedEndBalance = calculatedEndBalance.subtract(record.getMutationAmount());
+                mutation = -record.getMutationAmountCents();
             }
+            return FixedPoint.isBalanced(record.getStartBalanceCents(), mutation, record.getEndBalanceCents());
+        }
 
-            if (!calculatedEndBalance.equals(record.getEndBalance())) {
-                failedRecords.add(record);
-            }
+        BigDecimal calculatedEndBalance = record.getStartBalance();
+        if (record.getMutationType() == '+') {
+            calculatedEndBalance = calculatedEndBalance.add(record.getMutationAmount());
+        } else if (record.getMutationType() == '-') {
+            calculatedEndBalance = calculatedEndBalance.subtract(record.getMutationAmount());
         }
-        return failedRecords;
+        return calculatedEndBalance.compareTo(record.getEndBalance()) == 0;
     }
 }
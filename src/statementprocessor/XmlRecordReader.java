@@ -0,0 +1,201 @@
+// XmlRecordReader.java
+package statementprocessor;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+
+/**
+ * Streaming {@link RecordReader} for XML statement files, based on the StAX pull parser.
+ * <p>
+ * Unlike a DOM based parser this reader never builds a tree of the whole document: it walks the
+ * <code>&lt;record&gt;</code> elements one by one and only keeps the fields of the current record,
+ * so the memory usage stays flat no matter how many records the file contains.
+ * </p>
+ * The expected layout is the same as documented on {@link FileReaderUtil#readXML(String)}. When reading leniently,
+ * records with a missing field or an invalid number are quarantined by the line of their start tag.
+ */
+public class XmlRecordReader implements RecordReader {
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private final InputStream input;
+    private final XMLStreamReader reader;
+    private Quarantine quarantine;
+
+    /**
+     * Opens the XML file at the given path for streaming.
+     *
+     * @param filePath the file path of the XML file to read
+     * @throws IOException if the file cannot be opened or the XML prolog cannot be read
+     */
+    public XmlRecordReader(String filePath) throws IOException {
+        this(new FileInputStream(filePath));
+    }
+
+    /**
+     * Streams records from the given input. The stream is closed when this reader is closed.
+     *
+     * @param input the XML input
+     * @throws IOException if the XML prolog cannot be read
+     */
+    public XmlRecordReader(InputStream input) throws IOException {
+        this.input = new BufferedInputStream(input);
+        try {
+            this.reader = FACTORY.createXMLStreamReader(this.input);
+        } catch (XMLStreamException e) {
+            this.input.close();
+            throw new MalformedStatementException("Could not read the XML document: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Record next() throws IOException, NumberFormatException {
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("record")) {
+                    Record record = readRecord();
+                    if (record != null) {
+                        return record;
+                    }
+                }
+            }
+            return null;
+        } catch (XMLStreamException e) {
+            throw new MalformedStatementException("The XML document is not well-formed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads the fields of the <code>&lt;record&gt;</code> element the parser is currently positioned on.
+     * Like the DOM lookup it replaces, the first occurrence of each field element inside the record is used.
+     *
+     * @return the record, or {@code null} if it was quarantined
+     */
+    private Record readRecord() throws XMLStreamException, IOException {
+        int line = reader.getLocation().getLineNumber();
+        String reference = reader.getAttributeValue(null, "reference");
+        String accountNumber = null;
+        String description = null;
+        String startBalance = null;
+        String mutation = null;
+        String endBalance = null;
+
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                switch (reader.getLocalName()) {
+                    case "accountNumber":
+                        accountNumber = firstText(accountNumber);
+                        break;
+                    case "description":
+                        description = firstText(description);
+                        break;
+                    case "startBalance":
+                        startBalance = firstText(startBalance);
+                        break;
+                    case "mutation":
+                        mutation = firstText(mutation);
+                        break;
+                    case "endBalance":
+                        endBalance = firstText(endBalance);
+                        break;
+                    default:
+                        depth++;
+                        break;
+                }
+            }
+        }
+
+        try {
+            return new Record(
+                    Integer.parseInt(reference == null ? "" : reference),
+                    StringCache.SHARED.intern(required(accountNumber, "accountNumber", reference)),
+                    StringCache.SHARED.intern(required(description, "description", reference)),
+                    new BigDecimal(required(startBalance, "startBalance", reference)),
+                    required(mutation, "mutation", reference),
+                    new BigDecimal(required(endBalance, "endBalance", reference))
+            );
+        } catch (MalformedStatementException | IllegalArgumentException e) {
+            if (quarantine == null) {
+                throw e;
+            }
+            String cause = e instanceof RuntimeException ? Quarantine.describe((RuntimeException) e) : e.getMessage();
+            quarantine.add("line " + line, toXml(reference, accountNumber, description, startBalance, mutation, endBalance), cause);
+            return null;
+        }
+    }
+
+    /**
+     * Rebuilds the text of a quarantined record from the fields that were read, leaving out the missing ones.
+     */
+    private static String toXml(String reference, String accountNumber, String description, String startBalance,
+                                String mutation, String endBalance) {
+        StringBuilder xml = new StringBuilder("<record");
+        if (reference != null) {
+            xml.append(" reference=\"").append(reference).append('"');
+        }
+        xml.append('>');
+        appendElement(xml, "accountNumber", accountNumber);
+        appendElement(xml, "description", description);
+        appendElement(xml, "startBalance", startBalance);
+        appendElement(xml, "mutation", mutation);
+        appendElement(xml, "endBalance", endBalance);
+        return xml.append("</record>").toString();
+    }
+
+    private static void appendElement(StringBuilder xml, String element, String value) {
+        if (value != null) {
+            xml.append('<').append(element).append('>').append(value).append("</").append(element).append('>');
+        }
+    }
+
+    @Override
+    public void setQuarantine(Quarantine quarantine) {
+        this.quarantine = quarantine;
+    }
+
+    /**
+     * Returns the text of the current element, or the already read value if the element occurred before.
+     * Either way the parser is left on the end tag of the current element.
+     */
+    private String firstText(String current) throws XMLStreamException {
+        String text = reader.getElementText();
+        return current != null ? current : text;
+    }
+
+    private static String required(String value, String element, String reference) throws MalformedStatementException {
+        if (value == null) {
+            throw new MalformedStatementException("Record " + reference + " is missing the <" + element + "> element");
+        }
+        return value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            // The underlying stream is closed below, which is all we need
+        } finally {
+            input.close();
+        }
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // Statement files never need a DTD, and resolving external entities is a security risk
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
@@ -0,0 +1,46 @@
+// AccountChainTest.java
+package statementprocessor;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.*;
+
+public class AccountChainTest {
+
+    private static Record record(int reference, String account, String start, String mutation, String end) {
+        return new Record(reference, account, "Payment " + reference, new BigDecimal(start), mutation, new BigDecimal(end));
+    }
+
+    @Test
+    public void testChainIsCheckedPerAccount() {
+        AccountChain chain = new AccountChain();
+        assertTrue("The first record starts the chain", chain.follows(record(1, "NL01", "10.00", "+5", "15.00")));
+        assertTrue("The first record of another account starts its own chain", chain.follows(record(2, "NL02", "99", "+1", "100")));
+        assertTrue("Balances are compared by value", chain.follows(record(3, "NL01", "15.0", "-5", "10.0")));
+        assertFalse(chain.follows(record(4, "NL02", "50", "+1", "51")));
+        assertTrue("A broken chain continues from the last end balance", chain.follows(record(5, "NL02", "51", "+1", "52")));
+        assertEquals(2, chain.size());
+    }
+
+    @Test
+    public void testBalancesThatDoNotFitInCents() {
+        AccountChain chain = new AccountChain();
+        assertTrue(chain.follows(record(1, "NL01", "1.005", "+1.00", "2.005")));
+        assertTrue(chain.follows(record(2, "NL01", "2.005", "+1.00", "3.005")));
+        assertFalse(chain.follows(record(3, "NL01", "3.00", "+1.00", "4.00")));
+        assertTrue(chain.follows(record(4, "NL01", "4.000", "+1.00", "5.00")));
+    }
+
+    @Test
+    public void testValidatorReportsBrokenChain() {
+        Validator validator = new Validator(new IntHashReferenceIndex(), new AccountChain());
+        assertNull(validator.validate(record(1, "NL01", "10", "+5", "15")));
+        assertEquals(FailureReason.DUPLICATE_REFERENCE, validator.validate(record(1, "NL01", "99", "+1", "100")));
+        assertEquals("A duplicate does not move the chain on", null, validator.validate(record(2, "NL01", "15", "+1", "16")));
+        assertEquals(FailureReason.BALANCE_MISMATCH, validator.validate(record(3, "NL01", "20", "+1", "22")));
+        assertEquals(FailureReason.BROKEN_ACCOUNT_CHAIN, validator.validate(record(4, "NL01", "23", "+1", "24")));
+        assertFalse(new Validator().checksAccountChains());
+    }
+}
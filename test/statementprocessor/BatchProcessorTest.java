@@ -0,0 +1,135 @@
+// BatchProcessorTest.java
+package statementprocessor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BatchProcessorTest {
+    private static final String HEADER = "Reference,Account Number,Description,Start Balance,Mutation,End Balance\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private void write(String name, String content) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes());
+    }
+
+    @Test
+    public void testFindFiles() throws IOException {
+        write("b.csv", HEADER);
+        write("a.xml", "<records/>");
+        write("notes.txt", "");
+        write("branches/c.csv", HEADER);
+
+        String root = folder.getRoot().getPath();
+        assertEquals("Directory should list CSV and XML files recursively, sorted",
+                List.of(Paths.get(root, "a.xml"), Paths.get(root, "b.csv"), Paths.get(root, "branches", "c.csv")),
+                BatchProcessor.findFiles(root));
+        assertEquals("Glob should only match the pattern",
+                List.of(Paths.get(root, "branches", "c.csv")),
+                BatchProcessor.findFiles(root + File.separator + "branches" + File.separator + "*.csv"));
+        assertTrue("A glob is processed in batch mode", BatchProcessor.isBatch(root + File.separator + "*.csv"));
+        assertTrue("A directory is processed in batch mode", BatchProcessor.isBatch(root));
+        assertFalse("A file is not processed in batch mode", BatchProcessor.isBatch(root + File.separator + "b.csv"));
+    }
+
+    @Test
+    public void testGlobsOnlyDescendAsFarAsThePattern() throws IOException {
+        write("b.csv", HEADER);
+        write("statements[2024].csv", HEADER);
+        write("branches/c.csv", HEADER);
+        write("branches/east/d.csv", HEADER);
+
+        String root = folder.getRoot().getPath() + File.separator;
+        assertFalse("An existing file with glob characters is not a pattern", BatchProcessor.isBatch(root + "statements[2024].csv"));
+        assertEquals(List.of(Paths.get(root, "b.csv"), Paths.get(root, "statements[2024].csv")),
+                BatchProcessor.findFiles(root + "*.csv"));
+        assertEquals(List.of(Paths.get(root, "branches", "c.csv")),
+                BatchProcessor.findFiles(root + "b*" + File.separator + "*.csv"));
+        assertEquals(List.of(Paths.get(root, "branches", "c.csv"), Paths.get(root, "branches", "east", "d.csv")),
+                BatchProcessor.findFiles(root + "branches" + File.separator + "**.csv"));
+    }
+
+    @Test
+    public void testMergedReportIsInFileOrder() throws IOException {
+        // Every file reuses reference 1: duplicates are only detected within a file
+        for (int i = 0; i < 20; i++) {
+            write(String.format("statement-%02d.csv", i), HEADER + "1,NL01,Ok,1,+1,2\n" + "1,NL01,Duplicate " + i + ",1,+1,2\n");
+        }
+        write("statement-20.xml", "<records><record reference=\"1\"><accountNumber>NL01</accountNumber>"
+                + "<description>Wrong</description><startBalance>1</startBalance><mutation>+1</mutation>"
+                + "<endBalance>3</endBalance></record></records>");
+        write("statement-21.csv", HEADER + "X,NL01,Broken,1,+1,2\n");
+
+        List<Path> files = BatchProcessor.findFiles(folder.getRoot().getPath());
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        StringWriter output = new StringWriter();
+        int failedFiles;
+        try (ReportWriter report = ReportWriter.create("csv", output)) {
+            failedFiles = new BatchProcessor(ProcessorOptions.parse(new String[0]), 4, new PrintStream(errors)).process(files, report);
+        }
+
+        StringBuilder expected = new StringBuilder("Reference,Account Number,Description,Reason,File\n");
+        for (int i = 0; i < 20; i++) {
+            expected.append("1,NL01,Duplicate ").append(i).append(",DUPLICATE_REFERENCE,").append(files.get(i)).append('\n');
+        }
+        expected.append("1,NL01,Wrong,BALANCE_MISMATCH,").append(files.get(20)).append('\n');
+        assertEquals("Merged report should follow the order of the files", expected.toString(), output.toString());
+        assertEquals("The broken file should be counted", 1, failedFiles);
+        assertTrue("The broken file should be reported", errors.toString().contains("statement-21.csv"));
+    }
+
+    @Test
+    public void testDuplicatesBetweenConcurrentFilesAreFound() throws IOException {
+        // Both files start with reference 7 and are long enough to be processed at the same time
+        for (int file = 0; file < 2; file++) {
+            StringBuilder statement = new StringBuilder(HEADER).append("7,NL01,Shared ").append(file).append(",1,+1,2\n");
+            for (int i = 0; i < 50_000; i++) {
+                statement.append(1000 + file * 100_000 + i).append(",NL01,Ok,1,+1,2\n");
+            }
+            write("statement-" + file + ".csv", statement.toString());
+        }
+        Path store = folder.getRoot().toPath().resolve("references.store");
+        ProcessorOptions options = ProcessorOptions.parse(new String[]{"--reference-store=" + store, folder.getRoot().getPath()});
+
+        StringWriter output = new StringWriter();
+        try (PersistentReferenceIndex references = options.openReferenceStore();
+             ReportWriter report = ReportWriter.create("csv", output)) {
+            List<Path> files = BatchProcessor.findFiles(folder.getRoot().getPath());
+            assertEquals(0, new BatchProcessor(options, 2, System.err).process(files, report));
+            assertEquals("Every reference should be stored once", 100_001, references.size());
+        }
+        String[] lines = output.toString().split("\n");
+        assertEquals("The shared reference should be reported once: " + output, 2, lines.length);
+        assertTrue(lines[1], lines[1].startsWith("7,NL01,Shared ") && lines[1].contains("DUPLICATE_REFERENCE"));
+    }
+
+    @Test
+    public void testFailuresBeforeAnErrorAreReported() throws IOException {
+        write("statement.csv", HEADER + "1,NL01,Ok,1,+1,2\n" + "1,NL01,Duplicate,1,+1,2\n" + "X,NL01,Broken,1,+1,2\n");
+        List<Path> files = BatchProcessor.findFiles(folder.getRoot().getPath());
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        StringWriter output = new StringWriter();
+        try (ReportWriter report = ReportWriter.create("csv", output)) {
+            assertEquals(1, new BatchProcessor(ProcessorOptions.parse(new String[0]), 2, new PrintStream(errors)).process(files, report));
+        }
+        assertTrue("The duplicate found before the error should be reported: " + output,
+                output.toString().contains("1,NL01,Duplicate,DUPLICATE_REFERENCE"));
+        assertTrue(errors.toString().contains("statement.csv"));
+    }
+}
@@ -0,0 +1,130 @@
+// CheckpointProcessorTest.java
+package statementprocessor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+
+public class CheckpointProcessorTest {
+    private static final String HEADER = "Reference,Account Number,Description,Start Balance,Mutation,End Balance\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String statement(int from, int to) {
+        StringBuilder rows = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            // Every third record repeats an earlier reference, every fifth has a wrong end balance
+            int reference = i % 3 == 2 ? i - 1 : i;
+            rows.append(reference).append(",NL01,Record ").append(i).append(",10,+5,").append(i % 5 == 4 ? 16 : 15).append('\n');
+        }
+        return rows.toString();
+    }
+
+    private long process(Path statement, Path checkpoint, Path report) throws IOException {
+        ProcessorOptions options = ProcessorOptions.parse(new String[]{"--report-file=" + report});
+        return new CheckpointProcessor(checkpoint, 4, new PrintStream(new ByteArrayOutputStream()))
+                .process(statement.toString(), options);
+    }
+
+    @Test
+    public void testResumeAfterInvalidRecord() throws IOException {
+        Path statement = folder.getRoot().toPath().resolve("statement.csv");
+        Path checkpoint = folder.getRoot().toPath().resolve("statement.checkpoint");
+        Path report = folder.getRoot().toPath().resolve("report.txt");
+        Files.write(statement, (HEADER + statement(0, 10) + "10,NL01,Broken,10,+5,X\n" + statement(11, 30)).getBytes());
+
+        try {
+            process(statement, checkpoint, report);
+            fail("The invalid record should stop the run");
+        } catch (NumberFormatException e) {
+            // Expected
+        }
+        Checkpoint saved = Checkpoint.load(checkpoint);
+        assertFalse("The run should not be complete", saved.complete);
+        assertEquals("The checkpoint should be just before the invalid record", 10, saved.recordCount);
+
+        // Fix the invalid record and resume
+        Files.write(statement, (HEADER + statement(0, 30)).getBytes());
+        long failed = process(statement, checkpoint, report);
+
+        Path expected = folder.getRoot().toPath().resolve("expected.txt");
+        long expectedFailed = process(statement, folder.getRoot().toPath().resolve("other.checkpoint"), expected);
+        assertEquals("The resumed report should match an uninterrupted run",
+                new String(Files.readAllBytes(expected)), new String(Files.readAllBytes(report)));
+        assertEquals(expectedFailed, failed);
+        assertTrue("The run should be complete", Checkpoint.load(checkpoint).complete);
+    }
+
+    @Test
+    public void testTailMode() throws IOException {
+        Path statement = folder.getRoot().toPath().resolve("statement.csv");
+        Path checkpoint = folder.getRoot().toPath().resolve("statement.checkpoint");
+        Path report = folder.getRoot().toPath().resolve("report.txt");
+        Files.write(statement, (HEADER + statement(0, 10)).getBytes());
+        process(statement, checkpoint, report);
+
+        Files.write(statement, ("100,NL01,New,10,+5,15\n" + "3,NL01,Old reference,10,+5,15\n").getBytes(), StandardOpenOption.APPEND);
+        assertEquals("Only the appended records should be processed", 1, process(statement, checkpoint, report));
+        String text = new String(Files.readAllBytes(report));
+        assertTrue("A reference of the earlier run should be a duplicate", text.contains("Old reference"));
+        assertFalse("Records of the earlier run should not be reported again", text.contains("Record "));
+        assertEquals(12, Checkpoint.load(checkpoint).recordCount);
+    }
+
+    @Test
+    public void testSeekableReaderPosition() throws IOException {
+        Path statement = folder.getRoot().toPath().resolve("statement.csv");
+        Files.write(statement, (HEADER + "1,NL01,First,1,+1,2\r\n" + "2,NL01,Second,1,+1,2").getBytes());
+        long position;
+        try (SeekableCsvRecordReader reader = new SeekableCsvRecordReader(statement.toString(), 0)) {
+            assertEquals("First", reader.next().getDescription());
+            position = reader.position();
+            assertEquals(HEADER.length() + "1,NL01,First,1,+1,2\r\n".length(), position);
+        }
+        try (SeekableCsvRecordReader reader = new SeekableCsvRecordReader(statement.toString(), position)) {
+            assertNull("A line without a line break may still be being written", reader.next());
+            assertTrue(reader.hasIncompleteLine());
+            assertEquals("The incomplete line should be left for the next run", position, reader.position());
+        }
+        Files.write(statement, "\n".getBytes(), StandardOpenOption.APPEND);
+        try (SeekableCsvRecordReader reader = new SeekableCsvRecordReader(statement.toString(), position)) {
+            assertEquals("Second", reader.next().getDescription());
+            assertNull(reader.next());
+            assertFalse(reader.hasIncompleteLine());
+            assertEquals(Files.size(statement), reader.position());
+        }
+    }
+
+    @Test
+    public void testLineBeingWrittenIsLeftForTheNextRun() throws IOException {
+        Path statement = folder.getRoot().toPath().resolve("statement.csv");
+        Path checkpoint = folder.getRoot().toPath().resolve("statement.checkpoint");
+        Path report = folder.getRoot().toPath().resolve("report.txt");
+        Files.write(statement, (HEADER + "1,NL1,a,10.00,+5.00,15.00\n2,NL1,b,15.00,+5.00,2").getBytes());
+        assertEquals(0, process(statement, checkpoint, report));
+        assertEquals(1, Checkpoint.load(checkpoint).recordCount);
+
+        Files.write(statement, "0.00\n3,NL1,c,20.00,+5.00,25.00\n".getBytes(), StandardOpenOption.APPEND);
+        assertEquals("The completed line should be validated in full", 0, process(statement, checkpoint, report));
+        assertEquals(3, Checkpoint.load(checkpoint).recordCount);
+    }
+
+    @Test
+    public void testCheckpointIsRejectedInBatchMode() {
+        String directory = folder.getRoot().toString();
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> ProcessorOptions.parse(new String[]{"--checkpoint=cp", directory}));
+        assertTrue(e.getMessage(), e.getMessage().startsWith("Option --checkpoint processes a single CSV file"));
+        assertThrows(IllegalArgumentException.class, () -> ProcessorOptions.parse(new String[]{"--checkpoint=cp", "statements/*.csv"}));
+    }
+}
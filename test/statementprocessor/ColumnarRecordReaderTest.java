@@ -0,0 +1,134 @@
+// ColumnarRecordReaderTest.java
+package statementprocessor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class ColumnarRecordReaderTest {
+    private static final String CSV = "Reference,Account Number,Description,Start Balance,Mutation,End Balance\n"
+            + "1,NL01,Groceries,10,+5.5,15.50\n"
+            + "2,NL02,Tickets for Peter Theu\u00dfen,100.00,-99.99,0.01\n"
+            + "1,NL01,Duplicate,10,+5,15\n"
+            + "3,NL01,Groceries,10,+5,16\n"
+            + "4,NL03,Many decimals,1.005,+1.00,2.005\n"
+            + "5,NL03,Huge,1234567890123456789.5,-0.5,1234567890123456789\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path convert() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("statement.acol");
+        try (RecordReader reader = new CsvRecordReader(new StringReader(CSV))) {
+            assertEquals(6, ColumnarStatementWriter.convert(reader, file));
+        }
+        return file;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path file = convert();
+        try (RecordReader csv = new CsvRecordReader(new StringReader(CSV));
+             ColumnarRecordReader columnar = new ColumnarRecordReader(file.toString(), 2)) {
+            assertEquals(6, columnar.size());
+            Record expected;
+            while ((expected = csv.next()) != null) {
+                Record actual = columnar.next();
+                assertEquals(expected.getTransactionReference(), actual.getTransactionReference());
+                assertEquals(expected.getAccountNumber(), actual.getAccountNumber());
+                assertEquals(expected.getDescription(), actual.getDescription());
+                assertEquals(0, expected.getStartBalance().compareTo(actual.getStartBalance()));
+                assertEquals(expected.getMutationType(), actual.getMutationType());
+                assertEquals(0, expected.getMutationAmount().compareTo(actual.getMutationAmount()));
+                assertEquals(0, expected.getEndBalance().compareTo(actual.getEndBalance()));
+            }
+            assertNull("Columnar file should have no more records", columnar.next());
+        }
+        try (ColumnarRecordReader columnar = new ColumnarRecordReader(file.toString())) {
+            for (int i = 0; i < 5; i++) {
+                assertTrue(columnar.advance());
+            }
+            assertEquals("Amounts with more decimals should be kept exactly",
+                    new BigDecimal("1.005"), columnar.toRecord().getStartBalance());
+            assertEquals(FixedPoint.NOT_REPRESENTABLE, columnar.startBalanceCents());
+        }
+        assertEquals("Temporary column files should be removed", 1, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testDictionaryStringsAndExceptionsAreReadFromTheMapping() throws IOException {
+        StringBuilder csv = new StringBuilder("Reference,Account Number,Description,Start Balance,Mutation,End Balance\n");
+        for (int i = 0; i < 1000; i++) {
+            // Most amounts have three decimals, so most rows are exceptions
+            String amount = i % 10 == 0 ? "1.00" : "1.00" + i % 10;
+            csv.append(i).append(",NL0").append(i % 3).append(",Row ").append(i).append(',')
+                    .append(amount).append(",+1,").append(new BigDecimal(amount).add(BigDecimal.ONE)).append('\n');
+        }
+        Path file = folder.getRoot().toPath().resolve("exceptions.acol");
+        try (RecordReader reader = new CsvRecordReader(new StringReader(csv.toString()))) {
+            ColumnarStatementWriter.convert(reader, file);
+        }
+        try (RecordReader expectedRecords = new CsvRecordReader(new StringReader(csv.toString()));
+             ColumnarRecordReader columnar = new ColumnarRecordReader(file.toString(), 4)) {
+            Record first = columnar.next();
+            columnar.next();
+            columnar.next();
+            Record fourth = columnar.next();
+            assertSame("A repeated account number should be decoded once", first.getAccountNumber(), fourth.getAccountNumber());
+            expectedRecords.next();
+            expectedRecords.next();
+            expectedRecords.next();
+            expectedRecords.next();
+            Record expected;
+            while ((expected = expectedRecords.next()) != null) {
+                Record actual = columnar.next();
+                assertEquals(expected.getDescription(), actual.getDescription());
+                assertEquals(expected.getStartBalance(), actual.getStartBalance());
+                assertEquals(0, expected.getEndBalance().compareTo(actual.getEndBalance()));
+            }
+        }
+    }
+
+    @Test
+    public void testPipelineReportMatchesCsv() throws IOException {
+        Path file = convert();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (RecordReader reader = new CsvRecordReader(new StringReader(CSV))) {
+            StatementPipeline.process(reader, new Validator(), new ReportGenerator(new PrintStream(expected)));
+        }
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        try (RecordReader reader = new ColumnarRecordReader(file.toString())) {
+            assertEquals(2, StatementPipeline.process(reader, new Validator(), new ReportGenerator(new PrintStream(actual))));
+        }
+        assertEquals(expected.toString(), actual.toString());
+    }
+
+    @Test
+    public void testFailedConversionLeavesNoFile() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("statement.acol");
+        try (RecordReader reader = new CsvRecordReader(new StringReader(CSV + "X,NL01,Broken,1,+1,2\n"))) {
+            ColumnarStatementWriter.convert(reader, file);
+            fail("The invalid record should stop the conversion");
+        } catch (NumberFormatException e) {
+            // Expected
+        }
+        assertEquals("No files should be left behind", 0, folder.getRoot().list().length);
+    }
+
+    @Test(expected = MalformedStatementException.class)
+    public void testRejectsOtherFiles() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("statement.acol");
+        Files.write(file, CSV.getBytes());
+        new ColumnarRecordReader(file.toString()).close();
+    }
+}
@@ -0,0 +1,51 @@
+// FixedPointTest.java
+package statementprocessor;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.*;
+
+public class FixedPointTest {
+
+    private static long cents(String amount) {
+        return FixedPoint.parseCents(amount, 0, amount.length());
+    }
+
+    @Test
+    public void testParseCents() {
+        assertEquals(1699, cents("16.99"));
+        assertEquals(-1690, cents("-16.9"));
+        assertEquals(1600, cents("+16"));
+        assertEquals(0, cents("0.00"));
+        assertEquals(99999999999999999L, cents("999999999999999.99"));
+    }
+
+    @Test
+    public void testNotRepresentable() {
+        for (String amount : new String[]{"", "+", "1.", ".5", "1.005", "1E+1", "1,5", "1000000000000000", "12a"}) {
+            assertEquals("Amount '" + amount + "' should not be representable",
+                    FixedPoint.NOT_REPRESENTABLE, cents(amount));
+        }
+    }
+
+    @Test
+    public void testToCents() {
+        assertEquals(55000, FixedPoint.toCents(new BigDecimal("550.0")));
+        assertEquals(55000, FixedPoint.toCents(new BigDecimal("550")));
+        assertEquals(-1, FixedPoint.toCents(new BigDecimal("-0.01")));
+        assertEquals(100000, FixedPoint.toCents(new BigDecimal("1E+3")));
+        assertEquals(FixedPoint.NOT_REPRESENTABLE, FixedPoint.toCents(new BigDecimal("0.001")));
+        assertEquals(FixedPoint.NOT_REPRESENTABLE, FixedPoint.toCents(new BigDecimal("1000000000000000")));
+    }
+
+    @Test
+    public void testIsUnsignedAmount() {
+        assertTrue(FixedPoint.isUnsignedAmount("12345678901234567890.12", 0, 23));
+        assertTrue(FixedPoint.isUnsignedAmount("7", 0, 1));
+        for (String amount : new String[]{"", "+1", "1.", ".5", "1.005", "1E+1", "1a"}) {
+            assertFalse("Amount '" + amount + "' should be rejected", FixedPoint.isUnsignedAmount(amount, 0, amount.length()));
+        }
+    }
+}
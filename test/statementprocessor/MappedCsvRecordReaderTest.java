@@ -0,0 +1,100 @@
+// MappedCsvRecordReaderTest.java
+package statementprocessor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MappedCsvRecordReaderTest {
+    private static final String CSV = "Reference,Account Number,Description,Start Balance,Mutation,End Balance\r\n"
+            + "1,NL01,Deposit,10.00,+5.00,15.00\r\n"
+            + "2,NL02,Scale mismatch,500.0,+50,550.00\n"
+            + "3,NL03,Trailing comma,1,+1,2,\n"
+            + "4,NL04,Too many,1,+1,2,3\n"
+            + "\n"
+            + "5,NL05,Three decimals,1.005,+1,2.005\n"
+            + "1,NL06,Duplicate,1,+1,2\n"
+            + "6,NL07,Wrong,1.10,-0.10,1.01\n"
+            + "7,NL08,Exponent,1E+1,+1,11";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File writeCsv() throws IOException {
+        File file = folder.newFile("records.csv");
+        Files.write(file.toPath(), CSV.getBytes(Charset.defaultCharset()));
+        return file;
+    }
+
+    private static List<String> readAll(RecordReader reader) throws IOException {
+        List<String> records = new ArrayList<>();
+        Record record;
+        while ((record = reader.next()) != null) {
+            records.add(record + " " + record.getStartBalance() + " " + record.getMutationAmount() + " " + record.getEndBalance());
+        }
+        return records;
+    }
+
+    private static String report(RecordReader reader) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        StatementPipeline.process(reader, new Validator(), new ReportGenerator(new PrintStream(output)));
+        return output.toString();
+    }
+
+    @Test
+    public void testSameRecordsAsSequentialReader() throws IOException {
+        File file = writeCsv();
+        List<String> expected;
+        try (RecordReader reader = new CsvRecordReader(file.getPath())) {
+            expected = readAll(reader);
+        }
+        // A tiny window forces lines to cross window boundaries
+        for (int windowSize : new int[]{80, 1024, MappedCsvRecordReader.DEFAULT_WINDOW_SIZE}) {
+            try (RecordReader reader = new MappedCsvRecordReader(file.getPath(), windowSize)) {
+                assertEquals("Records should match for window size " + windowSize, expected, readAll(reader));
+            }
+        }
+    }
+
+    @Test
+    public void testFastPathReportsSameFailures() throws IOException {
+        File file = writeCsv();
+        String expected;
+        try (RecordReader reader = new CsvRecordReader(file.getPath())) {
+            expected = report(reader);
+        }
+        try (RecordReader reader = new MappedCsvRecordReader(file.getPath(), 80)) {
+            assertEquals("The memory-mapped report should match the streaming report", expected, report(reader));
+        }
+    }
+
+    @Test
+    public void testCursorReadsPrimitiveFields() throws IOException {
+        try (MappedCsvRecordReader reader = new MappedCsvRecordReader(writeCsv().getPath())) {
+            assertTrue("Cursor should move to the first row", reader.advance());
+            assertEquals("Reference should match", 1, reader.reference());
+            assertEquals("Start balance should match", 1000, reader.startBalanceCents());
+            assertEquals("Mutation should match", 500, reader.mutationCents());
+            assertEquals("End balance should match", 1500, reader.endBalanceCents());
+            assertEquals("Account number should match", "NL01", reader.accountNumber());
+        }
+    }
+
+    @Test
+    public void testLineLongerThanWindow() throws IOException {
+        try (MappedCsvRecordReader reader = new MappedCsvRecordReader(writeCsv().getPath(), 16)) {
+            assertThrows(IOException.class, reader::advance);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+// ParallelCsvRecordReaderTest.java
+package statementprocessor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ParallelCsvRecordReaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void assertSameRecords(List<Record> expected, List<Record> actual) {
+        assertEquals("Records count mismatch", expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals("Record " + i + " should match", expected.get(i).toString(), actual.get(i).toString());
+            assertEquals("Record " + i + " should match", expected.get(i).getEndBalance(), actual.get(i).getEndBalance());
+        }
+    }
+
+    @Test
+    public void testSameRecordsAsSequentialReader() throws IOException {
+        List<Record> sequential = FileReaderUtil.readCSV("test/resources/records.csv");
+        List<Record> parallel = FileReaderUtil.readCSVParallel("test/resources/records.csv", 4);
+        assertSameRecords(sequential, parallel);
+    }
+
+    @Test
+    public void testChunkBoundariesInsideLines() throws IOException {
+        StringBuilder csv = new StringBuilder("Reference,Account Number,Description,Start Balance,Mutation,End Balance\r\n");
+        for (int i = 0; i < 500; i++) {
+            csv.append(i).append(",NL").append(i % 7).append(",Payment ").append(i).append(",10.00,+").append(i % 10)
+                    .append(".50,").append(10 + i % 10).append(".50").append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        File file = folder.newFile("records.csv");
+        Files.write(file.toPath(), csv.toString().getBytes(Charset.defaultCharset()));
+
+        List<Record> sequential = FileReaderUtil.readCSV(file.getPath());
+        // Odd, small chunk sizes make sure lines are split across chunks in every possible place
+        for (int chunkSize : new int[]{1, 7, 64, 1000}) {
+            try (RecordReader reader = new ParallelCsvRecordReader(file.getPath(), 3, chunkSize)) {
+                List<Record> parallel = new ArrayList<>();
+                Record record;
+                while ((record = reader.next()) != null) {
+                    parallel.add(record);
+                }
+                assertSameRecords(sequential, parallel);
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidRecordIsReportedAfterPrecedingRecords() throws IOException {
+        File file = folder.newFile("invalid.csv");
+        Files.write(file.toPath(), ("header\n1,NL01,ok,1,+1,2\nX,NL02,bad,1,+1,2\n").getBytes(Charset.defaultCharset()));
+        try (RecordReader reader = new ParallelCsvRecordReader(file.getPath(), 2)) {
+            assertEquals("First record should be returned", 1, reader.next().getTransactionReference());
+            assertThrows(NumberFormatException.class, reader::next);
+        }
+    }
+}
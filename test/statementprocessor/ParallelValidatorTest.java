@@ -0,0 +1,152 @@
+// ParallelValidatorTest.java
+package statementprocessor;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+public class ParallelValidatorTest {
+
+    private static List<Record> randomRecords(int count, long seed) {
+        Random random = new Random(seed);
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // Roughly one in five references is a duplicate, and one in ten balances is wrong
+            int reference = random.nextInt(count * 4 / 5 + 1);
+            long start = random.nextInt(100_000);
+            long mutation = random.nextInt(10_000);
+            long end = start + mutation + (random.nextInt(10) == 0 ? 1 : 0);
+            records.add(new Record(reference, "NL" + (i % 97), "Payment " + i, BigDecimal.valueOf(start, 2),
+                    "+" + BigDecimal.valueOf(mutation, 2), BigDecimal.valueOf(end, 2)));
+        }
+        return records;
+    }
+
+    @Test
+    public void testSameFailuresAsSequentialValidator() {
+        List<Record> records = randomRecords(50_000, 7);
+        List<Record> expected = Validator.validateRecords(records);
+        for (int parallelism : new int[]{1, 3, 8}) {
+            assertEquals("Failed records should match the sequential validator with " + parallelism + " threads",
+                    expected, ParallelValidator.validateRecords(records, parallelism));
+        }
+    }
+
+    @Test
+    public void testDuplicatesAcrossBatches() {
+        List<Record> records = randomRecords(20_000, 11);
+        List<Record> expected = Validator.validateRecords(records);
+
+        List<Record> actual = new ArrayList<>();
+        try (ParallelValidator validator = new ParallelValidator(4, BitmapReferenceIndex::new)) {
+            for (int from = 0; from < records.size(); from += 3_000) {
+                actual.addAll(validator.validateBatch(records.subList(from, Math.min(records.size(), from + 3_000))));
+            }
+        }
+        assertEquals("Failed records should match the sequential validator", expected, actual);
+    }
+
+    private static List<Record> chainedRecords(int count, long seed) {
+        Random random = new Random(seed);
+        long[] balances = new long[500];
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // Roughly one in ten references is a duplicate, and one in twenty records breaks the chain of its account
+            int account = random.nextInt(balances.length);
+            int reference = random.nextInt(count * 9 / 10 + 1);
+            long start = balances[account] + (random.nextInt(20) == 0 ? 1 : 0);
+            long mutation = random.nextInt(10_000);
+            long end = start + mutation + (random.nextInt(20) == 0 ? 1 : 0);
+            balances[account] = end;
+            records.add(new Record(reference, "NL" + account, "Payment " + i, BigDecimal.valueOf(start, 2),
+                    "+" + BigDecimal.valueOf(mutation, 2), BigDecimal.valueOf(end, 2)));
+        }
+        return records;
+    }
+
+    private static List<FailureReason> reasons(CollectingReportWriter report) {
+        List<FailureReason> reasons = new ArrayList<>();
+        for (FailedRecord failed : report.getFailedRecords()) {
+            reasons.add(failed.getReason());
+        }
+        return reasons;
+    }
+
+    @Test
+    public void testSameAccountChainFailuresAsSequentialValidator() throws Exception {
+        List<Record> records = chainedRecords(30_000, 13);
+        Validator sequential = new Validator(new IntHashReferenceIndex(), new AccountChain());
+        CollectingReportWriter expected = new CollectingReportWriter();
+        for (Record record : records) {
+            FailureReason reason = sequential.validate(record);
+            if (reason != null) {
+                expected.report(record, reason);
+            }
+        }
+        assertTrue(reasons(expected).contains(FailureReason.BROKEN_ACCOUNT_CHAIN));
+
+        CollectingReportWriter actual = new CollectingReportWriter();
+        try (ParallelValidator validator = new ParallelValidator(4, IntHashReferenceIndex::new, true)) {
+            for (int from = 0; from < records.size(); from += 7_000) {
+                validator.validateBatch(records.subList(from, Math.min(records.size(), from + 7_000)), actual);
+            }
+        }
+        assertEquals("Failures should match the sequential validator", reasons(expected), reasons(actual));
+    }
+
+    @Test
+    public void testShardsShareOneBitmap() {
+        List<Record> records = randomRecords(50_000, 17);
+        List<Record> expected = Validator.validateRecords(records);
+        BitmapReferenceIndex shared = new BitmapReferenceIndex();
+        try (ParallelValidator validator = new ParallelValidator(8, () -> shared)) {
+            assertEquals("Failed records should match the sequential validator", expected, validator.validateBatch(records));
+        }
+        Set<Integer> references = new HashSet<>();
+        for (Record record : records) {
+            references.add(record.getTransactionReference());
+        }
+        assertEquals("Every reference should be in the shared bitmap once", references.size(), shared.size());
+    }
+
+    @Test
+    public void testSharedPoolOutlivesItsValidators() {
+        List<Record> records = randomRecords(20_000, 23);
+        List<Record> expected = Validator.validateRecords(records);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int i = 0; i < 2; i++) {
+                try (ParallelValidator validator = new ParallelValidator(pool, IntHashReferenceIndex::new, false)) {
+                    assertEquals("Failed records should match the sequential validator", expected, validator.validateBatch(records));
+                }
+                assertFalse("A shared pool is not shut down by its validators", pool.isShutdown());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testShardIndexesAreSizedTogether() {
+        ProcessorOptions options = ProcessorOptions.parse(new String[]{"--reference-index=bitmap", "--parallel-validation=16"});
+        Supplier<ReferenceIndex> factory = options.newShardReferenceIndexes(16, null);
+        assertSame("The shards should share one bitmap", factory.get(), factory.get());
+    }
+
+    @Test
+    public void testFirstOccurrenceIsAccepted() {
+        Record first = new Record(1, "NL01", "First", new BigDecimal("1.00"), "+1.00", new BigDecimal("2.00"));
+        Record second = new Record(1, "NL01", "Second", new BigDecimal("1.00"), "+1.00", new BigDecimal("2.00"));
+        List<Record> failed = ParallelValidator.validateRecords(List.of(first, second), 2);
+        assertEquals("Only the later occurrence should fail", List.of(second), failed);
+    }
+}
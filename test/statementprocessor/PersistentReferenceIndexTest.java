@@ -0,0 +1,108 @@
+// PersistentReferenceIndexTest.java
+package statementprocessor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class PersistentReferenceIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReferencesAreRememberedAcrossRuns() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("references.store");
+        try (PersistentReferenceIndex index = new PersistentReferenceIndex(file)) {
+            for (int reference : new int[]{0, 1, -1, Integer.MIN_VALUE, Integer.MAX_VALUE, 12345}) {
+                assertTrue("First add of " + reference + " should succeed", index.add(reference));
+                assertFalse("Second add of " + reference + " should fail", index.add(reference));
+            }
+            assertEquals(6, index.size());
+        }
+
+        try (PersistentReferenceIndex index = new PersistentReferenceIndex(file)) {
+            assertEquals("Size should be restored", 6, index.size());
+            assertTrue("Reference from the previous run should be known", index.contains(Integer.MIN_VALUE));
+            assertFalse("Reference from the previous run should be a duplicate", index.add(12345));
+            assertFalse("Reference that was never added should be unknown", index.contains(54321));
+            assertTrue(index.add(54321));
+        }
+    }
+
+    @Test
+    public void testDuplicatesAcrossFiles() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("references.store");
+        Record first = new Record(1, "NL01", "First", new BigDecimal("1"), "+1", new BigDecimal("2"));
+        Record second = new Record(2, "NL01", "Second", new BigDecimal("1"), "+1", new BigDecimal("2"));
+        Record again = new Record(1, "NL02", "Again", new BigDecimal("1"), "+1", new BigDecimal("2"));
+
+        try (PersistentReferenceIndex store = new PersistentReferenceIndex(file)) {
+            Validator validator = new Validator(store);
+            assertTrue(validator.isValid(first));
+            assertTrue(validator.isValid(second));
+        }
+        try (PersistentReferenceIndex store = new PersistentReferenceIndex(file)) {
+            assertEquals("Reference of an earlier file should be a duplicate",
+                    FailureReason.DUPLICATE_REFERENCE, new Validator(store).validate(again));
+        }
+    }
+
+    @Test
+    public void testAbortedFileLeavesNoReferences() throws IOException {
+        Path store = folder.getRoot().toPath().resolve("references.store");
+        Path statement = folder.getRoot().toPath().resolve("statement.csv");
+        String header = "Reference,Account Number,Description,Start Balance,Mutation,End Balance\n";
+        Files.write(statement, (header + "1,NL01,Ok,10.00,+5.00,15.00\n2,NL01,Typo,15.00,+5.00,2O.00\n").getBytes());
+        ProcessorOptions options = ProcessorOptions.parse(new String[]{"--reference-store=" + store, statement.toString()});
+
+        try (PersistentReferenceIndex references = options.openReferenceStore()) {
+            try (RecordReader reader = new CsvRecordReader(statement.toString())) {
+                assertThrows(NumberFormatException.class, () -> CustomerStatementProcessor.process(statement.toString(),
+                        reader, new CollectingReportWriter(), options));
+            }
+            assertEquals("An aborted file should not add its references", 0, references.size());
+
+            Files.write(statement, (header + "1,NL01,Ok,10.00,+5.00,15.00\n2,NL01,Fixed,15.00,+5.00,20.00\n").getBytes());
+            CollectingReportWriter report = new CollectingReportWriter();
+            try (RecordReader reader = new CsvRecordReader(statement.toString())) {
+                CustomerStatementProcessor.process(statement.toString(), reader, report, options);
+            }
+            assertEquals("The fixed file should not report its own references as duplicates", 0, report.getFailedCount());
+            assertEquals(2, references.size());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsOtherFiles() throws IOException {
+        Path file = folder.newFile("statement.csv").toPath();
+        Files.write(file, "Reference,Account Number,Description,Start Balance,Mutation,End Balance\n".getBytes());
+        new PersistentReferenceIndex(file).close();
+    }
+
+    @Test
+    public void testOpenTransactionsSeeEachOthersReferences() throws IOException {
+        try (PersistentReferenceIndex store = new PersistentReferenceIndex(folder.getRoot().toPath().resolve("references.store"))) {
+            PersistentReferenceIndex.Transaction first = store.begin();
+            PersistentReferenceIndex.Transaction second = store.begin();
+            ReferenceIndex firstIndex = first.newIndex();
+            ReferenceIndex secondIndex = second.newIndex();
+            assertTrue(firstIndex.add(1));
+            assertFalse("A reference staged by another open transaction should be a duplicate", secondIndex.add(1));
+            assertTrue(secondIndex.add(2));
+
+            first.close();
+            assertTrue("A closed transaction should release its references", secondIndex.add(1));
+            second.commit();
+            second.close();
+            assertEquals(2, store.size());
+        }
+    }
+}
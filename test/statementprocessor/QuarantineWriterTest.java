@@ -0,0 +1,103 @@
+// QuarantineWriterTest.java
+package statementprocessor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class QuarantineWriterTest {
+    private static final String HEADER = "Reference,Account Number,Description,Start Balance,Mutation,End Balance\n";
+    private static final String CSV = HEADER
+            + "1,NL01,Ok,10,+5,15\n"
+            + "2,NL01,Bad number,1O,+5,15\n"
+            + "3,NL01,Too few columns,10\n"
+            + "\n"
+            + "4,NL01,Bad mutation,10,*5,15\n"
+            + "5,NL01,Ok,10,+5,16\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<String> readAll(RecordReader reader, List<String> quarantined) throws IOException {
+        reader.setQuarantine((location, text, cause) -> quarantined.add(location + ": " + text));
+        List<String> descriptions = new ArrayList<>();
+        Record record;
+        while ((record = reader.next()) != null) {
+            descriptions.add(record.getDescription());
+        }
+        reader.close();
+        return descriptions;
+    }
+
+    @Test
+    public void testLenientCsvReaders() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("statement.csv");
+        Files.write(file, CSV.getBytes());
+        int badNumber = CSV.indexOf("2,NL01");
+        int tooFew = CSV.indexOf("3,NL01");
+        int badMutation = CSV.indexOf("4,NL01");
+
+        List<String> quarantined = new ArrayList<>();
+        assertEquals(List.of("Ok", "Ok"), readAll(new CsvRecordReader(new StringReader(CSV)), quarantined));
+        assertEquals("Rows should be quarantined by line number",
+                List.of("line 3: 2,NL01,Bad number,1O,+5,15", "line 4: 3,NL01,Too few columns,10",
+                        "line 6: 4,NL01,Bad mutation,10,*5,15"), quarantined);
+
+        List<String> expected = List.of("byte " + badNumber + ": 2,NL01,Bad number,1O,+5,15",
+                "byte " + tooFew + ": 3,NL01,Too few columns,10", "byte " + badMutation + ": 4,NL01,Bad mutation,10,*5,15");
+        List<RecordReader> readers = List.of(new SeekableCsvRecordReader(file.toString(), 0),
+                new ParallelCsvRecordReader(file.toString(), 2, 16), new MappedCsvRecordReader(file.toString()));
+        for (RecordReader reader : readers) {
+            quarantined = new ArrayList<>();
+            String name = reader.getClass().getSimpleName();
+            assertEquals(name, List.of("Ok", "Ok"), readAll(reader, quarantined));
+            assertEquals(name + " should quarantine rows by byte offset", expected, quarantined);
+        }
+    }
+
+    @Test
+    public void testLenientMappedPipeline() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("statement.csv");
+        // The quarantined row must not count as the first occurrence of reference 2
+        Files.write(file, (CSV + "2,NL01,Not a duplicate,10,+5,15\n").getBytes());
+        StringWriter quarantine = new StringWriter();
+        StringWriter report = new StringWriter();
+        try (QuarantineWriter writer = new QuarantineWriter(quarantine);
+             RecordReader reader = new MappedCsvRecordReader(file.toString());
+             ReportWriter reportWriter = ReportWriter.create("csv", report)) {
+            reader.setQuarantine(writer.forSource("statement.csv"));
+            StatementPipeline.process(reader, new Validator(), reportWriter);
+            assertEquals(3, writer.getCount());
+        }
+        assertEquals("Reference,Account Number,Description,Reason,File\n5,NL01,Ok,BALANCE_MISMATCH,\n", report.toString());
+        assertTrue(quarantine.toString().startsWith("{\"file\":\"statement.csv\",\"location\":\"byte " + CSV.indexOf("2,NL01")
+                + "\",\"cause\":\"Invalid number: "));
+    }
+
+    @Test
+    public void testLenientXmlReader() throws IOException {
+        String xml = "<records>\n"
+                + "<record reference=\"1\"><accountNumber>NL01</accountNumber><description>Ok</description>"
+                + "<startBalance>1</startBalance><mutation>+1</mutation><endBalance>2</endBalance></record>\n"
+                + "<record reference=\"2\"><accountNumber>NL01</accountNumber><description>Missing</description>"
+                + "<startBalance>1</startBalance><mutation>+1</mutation></record>\n"
+                + "<record reference=\"3\"><accountNumber>NL01</accountNumber><description>Ok</description>"
+                + "<startBalance>1</startBalance><mutation>+1</mutation><endBalance>2</endBalance></record>\n"
+                + "</records>";
+        List<String> quarantined = new ArrayList<>();
+        assertEquals(List.of("Ok", "Ok"), readAll(new XmlRecordReader(new ByteArrayInputStream(xml.getBytes())), quarantined));
+        assertEquals(List.of("line 3: <record reference=\"2\"><accountNumber>NL01</accountNumber><description>Missing</description>"
+                + "<startBalance>1</startBalance><mutation>+1</mutation></record>"), quarantined);
+    }
+}
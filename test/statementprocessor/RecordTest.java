@@ -15,4 +15,37 @@ public class RecordTest {
                 new Record(123, "NL91ABNA0417164300", "Deposit",new BigDecimal("1000.0"), "a+50",  new BigDecimal("1050.0"));
         });
     }
+
+    @Test
+    public void testInvalidMutationFormats() {
+        for (String mutation : new String[]{"", "+", "-.5", "+1.", "+1.234", "--1", "+ 1", "1e3", "+12345678901234567890.123"}) {
+            assertThrows("Mutation '" + mutation + "' should be rejected", IllegalArgumentException.class, () ->
+                    new Record(123, "NL91ABNA0417164300", "Deposit", new BigDecimal("1000.0"), mutation, new BigDecimal("1050.0")));
+        }
+    }
+
+    @Test
+    public void testMutationParsing() {
+        Record record = new Record(123, "NL91ABNA0417164300", "Deposit", new BigDecimal("1000.0"), "-16.9", new BigDecimal("983.1"));
+        assertEquals("Mutation type should match", '-', record.getMutationType());
+        assertEquals("Mutation amount should keep its decimals", new BigDecimal("16.9"), record.getMutationAmount());
+        assertEquals("Mutation amount in cents should match", 1690, record.getMutationAmountCents());
+    }
+
+    @Test
+    public void testMutationWithoutSignIsPositive() {
+        Record record = new Record(123, "NL91ABNA0417164300", "Deposit", new BigDecimal("1000.0"), "50", new BigDecimal("1050.0"));
+        assertEquals("Mutation type should default to +", '+', record.getMutationType());
+        assertEquals("Mutation amount should match", new BigDecimal("50"), record.getMutationAmount());
+        assertTrue("Balance should be valid", Validator.hasValidEndBalance(record));
+    }
+
+    @Test
+    public void testLargeMutationFallsBackToBigDecimal() {
+        Record record = new Record(123, "NL91ABNA0417164300", "Deposit", new BigDecimal("0"), "+12345678901234567890.12",
+                new BigDecimal("12345678901234567890.12"));
+        assertEquals("Mutation amount should match", new BigDecimal("12345678901234567890.12"), record.getMutationAmount());
+        assertFalse("Mutation amount cannot be represented in cents", record.hasFixedPointAmounts());
+        assertTrue("Balance should be valid", Validator.hasValidEndBalance(record));
+    }
 }
@@ -0,0 +1,46 @@
+// ReferenceIndexTest.java
+package statementprocessor;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+public class ReferenceIndexTest {
+
+    private static void assertBehavesLikeSet(Supplier<ReferenceIndex> factory) {
+        ReferenceIndex index = factory.get();
+        Set<Integer> expected = new HashSet<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            // Mix a dense range with a few arbitrary values, including 0 and negative references
+            int reference = i % 100 == 0 ? random.nextInt() : random.nextInt(50_000) - 100;
+            assertEquals("add(" + reference + ") should match HashSet.add", expected.add(reference), index.add(reference));
+        }
+        for (int reference : new int[]{0, Integer.MIN_VALUE, Integer.MAX_VALUE, -1}) {
+            assertEquals("add(" + reference + ") should match HashSet.add", expected.add(reference), index.add(reference));
+            assertTrue("Index should contain " + reference, index.contains(reference));
+        }
+        assertEquals("Size should match", expected.size(), index.size());
+        assertFalse("Index should not contain a reference that was never added", index.contains(60_000));
+    }
+
+    @Test
+    public void testIntHashReferenceIndex() {
+        assertBehavesLikeSet(() -> new IntHashReferenceIndex(4));
+    }
+
+    @Test
+    public void testBitmapReferenceIndex() {
+        assertBehavesLikeSet(BitmapReferenceIndex::new);
+    }
+
+    @Test
+    public void testOffHeapReferenceIndex() {
+        assertBehavesLikeSet(() -> new OffHeapReferenceIndex(4));
+    }
+}
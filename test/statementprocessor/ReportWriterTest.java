@@ -0,0 +1,182 @@
+// ReportWriterTest.java
+package statementprocessor;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+
+import static org.junit.Assert.*;
+
+public class ReportWriterTest {
+    private final Record duplicate = new Record(101, "NL91ABNA0417164300", "Deposit, \"cash\"", new BigDecimal("500.0"), "+50", new BigDecimal("550.0"));
+    private final Record mismatch = new Record(102, "NL91ABNA0417164301", "Withdrawal\\Error", new BigDecimal("300.0"), "-100", new BigDecimal("100.0"));
+
+    private String write(ReportWriter writer, StringWriter output) throws IOException {
+        writer.start();
+        writer.report(duplicate, FailureReason.DUPLICATE_REFERENCE);
+        writer.report(mismatch, FailureReason.BALANCE_MISMATCH);
+        writer.finish();
+        assertEquals("Failed count should match", 2, writer.getFailedCount());
+        return output.toString();
+    }
+
+    @Test
+    public void testCsvReport() throws IOException {
+        StringWriter output = new StringWriter();
+        String expected = "Reference,Account Number,Description,Reason,File\n"
+                + "101,NL91ABNA0417164300,\"Deposit, \"\"cash\"\"\",DUPLICATE_REFERENCE,\n"
+                + "102,NL91ABNA0417164301,Withdrawal\\Error,BALANCE_MISMATCH,\n";
+        assertEquals("CSV report should match", expected, write(ReportWriter.create("csv", output), output));
+    }
+
+    @Test
+    public void testJsonLinesReport() throws IOException {
+        StringWriter output = new StringWriter();
+        String expected = "{\"reference\":101,\"accountNumber\":\"NL91ABNA0417164300\",\"description\":\"Deposit, \\\"cash\\\"\",\"reason\":\"DUPLICATE_REFERENCE\"}\n"
+                + "{\"reference\":102,\"accountNumber\":\"NL91ABNA0417164301\",\"description\":\"Withdrawal\\\\Error\",\"reason\":\"BALANCE_MISMATCH\"}\n";
+        assertEquals("JSON Lines report should match", expected, write(ReportWriter.create("jsonl", output), output));
+    }
+
+    @Test
+    public void testSourceIsReported() throws IOException {
+        StringWriter output = new StringWriter();
+        ReportWriter writer = ReportWriter.create("text", output);
+        writer.start();
+        writer.setSource("a.csv");
+        writer.report(duplicate, null);
+        writer.setSource("a.csv");
+        writer.report(duplicate, null);
+        writer.setSource("b.xml");
+        writer.report(mismatch, null);
+        writer.finish();
+        String expected = "Failed Records Report:\nStatement: a.csv\n" + duplicate + "\n" + duplicate + "\nStatement: b.xml\n" + mismatch + "\n";
+        assertEquals("Text report should list the statement of the records", expected, output.toString().replace(System.lineSeparator(), "\n"));
+    }
+
+    @Test
+    public void testAsyncReportWritesSameOutput() throws IOException {
+        StringWriter expected = new StringWriter();
+        StringWriter actual = new StringWriter();
+        ReportWriter sync = ReportWriter.create("text", expected);
+        try (ReportWriter async = new AsyncReportWriter(ReportWriter.create("text", actual))) {
+            async.start();
+            sync.start();
+            for (int i = 0; i < 5000; i++) {
+                if (i % 1000 == 0) {
+                    async.setSource("statement-" + i / 1000 + ".csv");
+                    sync.setSource("statement-" + i / 1000 + ".csv");
+                }
+                async.report(i % 2 == 0 ? duplicate : mismatch, FailureReason.values()[i % 2]);
+                sync.report(i % 2 == 0 ? duplicate : mismatch, FailureReason.values()[i % 2]);
+            }
+            async.finish();
+            sync.finish();
+            assertEquals("Failed count should match", 5000, async.getFailedCount());
+        }
+        assertEquals("Asynchronous report should match the synchronous report", expected.toString(), actual.toString());
+    }
+
+    @Test
+    public void testAsyncReportFlushWaitsForBackgroundThread() throws IOException {
+        StringWriter output = new StringWriter();
+        try (ReportWriter async = new AsyncReportWriter(ReportWriter.create("csv", output))) {
+            async.resume(5);
+            async.report(duplicate, FailureReason.DUPLICATE_REFERENCE);
+            async.flush();
+            assertEquals("101,NL91ABNA0417164300,\"Deposit, \"\"cash\"\"\",DUPLICATE_REFERENCE,\n", output.toString());
+            assertEquals(6, async.getFailedCount());
+            async.finish();
+        }
+    }
+
+    @Test
+    public void testAsyncReportRethrowsWriteErrors() throws IOException {
+        Writer failing = new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        try (ReportWriter async = new AsyncReportWriter(new JsonLinesReportWriter(failing))) {
+            async.start();
+            async.report(duplicate, FailureReason.DUPLICATE_REFERENCE);
+            assertThrows(IOException.class, async::finish);
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void testAsyncReportSurvivesUncheckedWriteErrors() throws IOException {
+        Writer failing = new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) {
+                throw new IllegalStateException("writer is closed");
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        try (ReportWriter async = new AsyncReportWriter(new JsonLinesReportWriter(failing))) {
+            async.start();
+            // More failures than the queue holds: the producer must not block on a dead background thread
+            IOException error = assertThrows(IOException.class, () -> {
+                for (int i = 0; i < 1_000_000; i++) {
+                    async.report(duplicate, FailureReason.DUPLICATE_REFERENCE);
+                }
+                async.flush();
+            });
+            assertTrue(error.getCause() instanceof IllegalStateException);
+            assertThrows(IOException.class, async::finish);
+        }
+    }
+
+    @Test
+    public void testUnknownFormat() {
+        assertThrows(IllegalArgumentException.class, () -> ReportWriter.create("xml", new StringWriter()));
+    }
+
+    @Test
+    public void testConsoleReportShowsFirstFailureBeforeFinish() throws IOException {
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+        try (ReportWriter writer = new ReportGenerator(new PrintStream(console))) {
+            writer.start();
+            writer.report(duplicate, FailureReason.DUPLICATE_REFERENCE);
+            assertTrue("The first failure should be flushed straight away", console.toString().contains("101"));
+            writer.finish();
+        }
+    }
+
+    @Test
+    public void testConsoleReportFlushesALaterFailureWithoutNewRecords() throws Exception {
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+        try (ReportWriter writer = new ReportGenerator(new PrintStream(console))) {
+            writer.start();
+            writer.report(duplicate, FailureReason.DUPLICATE_REFERENCE);
+            writer.report(mismatch, FailureReason.BALANCE_MISMATCH);
+            // The second failure is not followed by another record, so only the timer can flush it
+            long deadline = System.nanoTime() + 5 * AbstractReportWriter.CONSOLE_FLUSH_INTERVAL_NANOS;
+            while (!console.toString().contains("102") && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            assertTrue("The second failure should be flushed within the interval", console.toString().contains("102"));
+            writer.finish();
+        }
+    }
+}
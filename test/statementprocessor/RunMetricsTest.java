@@ -0,0 +1,150 @@
+// RunMetricsTest.java
+package statementprocessor;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class RunMetricsTest {
+    private static final String CSV = "Reference,Account Number,Description,Start Balance,Mutation,End Balance\n"
+            + "1,NL01,Ok,10,+5,15\n"
+            + "1,NL01,Duplicate,10,+5,15\n"
+            + "2,NL01,Wrong,10,+5,16\n"
+            + "3,NL01,Ok,10,-5,5\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static PipelineMetrics process() throws IOException {
+        PipelineMetrics metrics = new PipelineMetrics();
+        try (RecordReader reader = new CsvRecordReader(new StringReader(CSV));
+             ReportWriter report = ReportWriter.create("csv", new StringWriter())) {
+            assertEquals(2, StatementPipeline.process(reader, new Validator(), report, metrics));
+        }
+        return metrics;
+    }
+
+    @Test
+    public void testPipelineMetrics() throws IOException {
+        PipelineMetrics metrics = process();
+        assertEquals(4, metrics.getRecords());
+        assertEquals(1, metrics.getFailedCount(FailureReason.DUPLICATE_REFERENCE));
+        assertEquals(1, metrics.getFailedCount(FailureReason.BALANCE_MISMATCH));
+        assertTrue("Stage times should add up to the elapsed time", metrics.getReadNanos() + metrics.getValidateNanos()
+                + metrics.getReportNanos() <= metrics.getElapsedNanos());
+    }
+
+    @Test
+    public void testUntimedMetricsOnlyCount() throws IOException {
+        PipelineMetrics metrics = new PipelineMetrics(false);
+        try (RecordReader reader = new CsvRecordReader(new StringReader(CSV));
+             ReportWriter report = ReportWriter.create("csv", new StringWriter())) {
+            StatementPipeline.process(reader, new Validator(), report, metrics);
+        }
+        assertEquals(4, metrics.getRecords());
+        assertEquals(1, metrics.getFailedCount(FailureReason.DUPLICATE_REFERENCE));
+        assertEquals("Reading should not be timed", 0, metrics.getReadNanos());
+        assertEquals("Reporting should not be timed", 0, metrics.getReportNanos());
+        assertTrue(metrics.getElapsedNanos() > 0);
+    }
+
+    @Test
+    public void testSummaryAndPrometheusFile() throws IOException {
+        RunMetrics run = new RunMetrics();
+        run.add("a.csv", CSV.length(), process());
+        run.add("b.csv", CSV.length(), process());
+        run.finish();
+        assertEquals(8, run.getRecords());
+        assertEquals(2 * CSV.length(), run.getBytes());
+
+        ByteArrayOutputStream summary = new ByteArrayOutputStream();
+        run.printSummary(new PrintStream(summary));
+        assertTrue(summary.toString().contains("Files: 2, records: 8, bytes: " + 2 * CSV.length()));
+        assertTrue(summary.toString().contains("Duplicate transaction reference: 2"));
+
+        Path file = folder.getRoot().toPath().resolve("statement_processor.prom");
+        run.writePrometheus(file);
+        List<String> lines = Files.readAllLines(file);
+        assertTrue(lines.contains("# TYPE statement_processor_records_total counter"));
+        assertTrue(lines.contains("statement_processor_records_total 8"));
+        assertTrue(lines.contains("statement_processor_failed_records_total{reason=\"BALANCE_MISMATCH\"} 2"));
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("statement_processor_stage_seconds{stage=\"validate\"} ")));
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("statement_processor_heap_peak_bytes ")));
+    }
+
+    @Test
+    public void testSnapshotLeavesTheRunGoingOn() throws IOException {
+        RunMetrics run = new RunMetrics();
+        run.add("a.csv", CSV.length(), process());
+        RunMetrics first = run.snapshot();
+        run.add("b.csv", CSV.length(), process());
+        assertEquals(4, first.getRecords());
+        assertEquals(8, run.snapshot().getRecords());
+
+        StringWriter snapshot = new StringWriter();
+        first.writePrometheus(snapshot);
+        assertFalse("A snapshot should have its wall time", snapshot.toString().contains("duration_seconds 0\n"));
+        StringWriter unfinished = new StringWriter();
+        run.writePrometheus(unfinished);
+        assertTrue("Taking a snapshot should not finish the run", unfinished.toString().contains("duration_seconds 0\n"));
+    }
+
+    @Test
+    public void testFlightRecorderEvents() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("events.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(StatementFileEvent.class);
+            recording.enable(RecordBatchEvent.class);
+            recording.start();
+            new RunMetrics().add("a.csv", CSV.length(), process());
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        RecordedEvent fileEvent = events.stream()
+                .filter(event -> event.getEventType().getName().equals("statementprocessor.StatementFile"))
+                .findFirst().orElseThrow(AssertionError::new);
+        assertEquals("a.csv", fileEvent.getString("file"));
+        assertEquals(4, fileEvent.getLong("records"));
+        assertEquals(2, fileEvent.getLong("failedRecords"));
+        assertTrue("A batch event should be committed", events.stream()
+                .anyMatch(event -> event.getEventType().getName().equals("statementprocessor.RecordBatch")));
+    }
+
+    @Test
+    public void testParallelBatchEventsAreCommittedOnce() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("events.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(RecordBatchEvent.class);
+            recording.start();
+            try (RecordReader reader = new CsvRecordReader(new StringReader(CSV));
+                 ParallelValidator validator = new ParallelValidator(2);
+                 ReportWriter report = ReportWriter.create("csv", new StringWriter())) {
+                StatementPipeline.process(reader, validator, report, new PipelineMetrics());
+            }
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> batches = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals("statementprocessor.RecordBatch"))
+                .collect(Collectors.toList());
+        assertEquals("The only batch should be committed once", 1, batches.size());
+        assertEquals(4, batches.get(0).getLong("records"));
+        assertEquals("The batch should carry its own failures", 2, batches.get(0).getLong("failedRecords"));
+    }
+}
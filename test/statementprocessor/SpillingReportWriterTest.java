@@ -0,0 +1,39 @@
+// SpillingReportWriterTest.java
+package statementprocessor;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SpillingReportWriterTest {
+
+    @Test
+    public void testSpilledFailuresAreReplayedInOrder() throws IOException {
+        CollectingReportWriter replayed = new CollectingReportWriter();
+        try (SpillingReportWriter writer = new SpillingReportWriter(2)) {
+            for (int i = 0; i < 5; i++) {
+                writer.report(new Record(i, i == 3 ? null : "NL0" + i, "Theu\u00dfen " + i, new BigDecimal("1.005"),
+                        "-0.5", new BigDecimal("0.505")), FailureReason.values()[i % 2]);
+            }
+            assertEquals(5, writer.getFailedCount());
+            writer.replayTo(replayed);
+        }
+
+        List<FailedRecord> failedRecords = replayed.getFailedRecords();
+        assertEquals(5, failedRecords.size());
+        for (int i = 0; i < 5; i++) {
+            Record record = failedRecords.get(i).getRecord();
+            assertEquals(i, record.getTransactionReference());
+            assertEquals(i == 3 ? null : "NL0" + i, record.getAccountNumber());
+            assertEquals("Theu\u00dfen " + i, record.getDescription());
+            assertEquals(new BigDecimal("1.005"), record.getStartBalance());
+            assertEquals('-', record.getMutationType());
+            assertEquals(new BigDecimal("0.5"), record.getMutationAmount());
+            assertEquals(FailureReason.values()[i % 2], failedRecords.get(i).getReason());
+        }
+    }
+}
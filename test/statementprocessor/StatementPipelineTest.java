@@ -0,0 +1,43 @@
+// StatementPipelineTest.java
+package statementprocessor;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+public class StatementPipelineTest {
+
+    @Test
+    public void testFailedRecordsAreReportedWhileStreaming() throws IOException {
+        String csv = "Reference,Account Number,Description,Start Balance,Mutation,End Balance\n"
+                + "1,NL01,Deposit,10.00,+5.00,15.00\n"
+                + "2,NL02,Wrong balance,10.00,+5.00,16.00\n"
+                + "1,NL03,Duplicate,10.00,-5.00,5.00\n";
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        long failed;
+        try (RecordReader reader = new CsvRecordReader(new StringReader(csv))) {
+            failed = StatementPipeline.process(reader, new Validator(), new ReportGenerator(new PrintStream(output)));
+        }
+
+        String expectedReport = "Failed Records Report:\n" +
+                "Transaction Reference: 2, Description: Wrong balance, Reason: End balance does not match start balance and mutation\n" +
+                "Transaction Reference: 1, Description: Duplicate, Reason: Duplicate transaction reference\n";
+        assertEquals("Number of failed records should match", 2, failed);
+        assertEquals("The streamed report does not match the expected output", expectedReport, output.toString());
+    }
+
+    @Test
+    public void testEmptyInput() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (RecordReader reader = new CsvRecordReader(new StringReader(""))) {
+            StatementPipeline.process(reader, new Validator(), new ReportGenerator(new PrintStream(output)));
+        }
+        assertEquals("Failed Records Report:\nNo failed records found.\n", output.toString());
+    }
+}
@@ -0,0 +1,179 @@
+// StatementServerTest.java
+package statementprocessor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class StatementServerTest {
+    private static final String CSV = "Reference,Account Number,Description,Start Balance,Mutation,End Balance\n"
+            + "1,NL01,Ok,10,+5,15\n"
+            + "1,NL01,Duplicate,10,+5,15\n"
+            + "2,NL01,Wrong,10,+5,16\n";
+    private static final String XML = "<records>"
+            + "<record reference=\"1\"><accountNumber>NL01</accountNumber><description>Ok</description>"
+            + "<startBalance>10</startBalance><mutation>+5</mutation><endBalance>15</endBalance></record>"
+            + "<record reference=\"2\"><accountNumber>NL01</accountNumber><description>Wrong</description>"
+            + "<startBalance>10</startBalance><mutation>-5</mutation><endBalance>15</endBalance></record>"
+            + "</records>";
+
+    private ProcessorOptions options;
+    private StatementServer server;
+
+    @Before
+    public void startServer() throws IOException {
+        options = ProcessorOptions.parse(new String[]{"--serve=0", "--report-format=csv"});
+        server = new StatementServer(options, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2);
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+    }
+
+    private String[] request(String method, String path, String contentType, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + path).openConnection();
+        connection.setRequestMethod(method);
+        if (contentType != null) {
+            connection.setRequestProperty("Content-Type", contentType);
+        }
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            in.transferTo(response);
+        }
+        return new String[]{String.valueOf(status), response.toString(StandardCharsets.UTF_8)};
+    }
+
+    @Test
+    public void testConcurrentSubmissionsAreValidatedSeparately() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String[]>> responses = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                boolean xml = i % 2 == 1;
+                responses.add(clients.submit(() -> xml
+                        ? request("POST", "/validate", "application/xml", XML)
+                        : request("POST", "/validate", "text/csv", CSV)));
+            }
+            for (int i = 0; i < responses.size(); i++) {
+                String[] response = responses.get(i).get();
+                assertEquals(response[1], "200", response[0]);
+                // Every statement has its own references, so a reference is never a duplicate of another statement
+                if (i % 2 == 1) {
+                    assertFalse(response[1].contains("DUPLICATE_REFERENCE"));
+                    assertTrue(response[1].contains("BALANCE_MISMATCH"));
+                } else {
+                    assertTrue(response[1].contains("DUPLICATE_REFERENCE"));
+                    assertTrue(response[1].contains("BALANCE_MISMATCH"));
+                }
+            }
+        } finally {
+            clients.shutdown();
+        }
+        assertEquals(16 * 3 + 16 * 2, options.getMetrics().getRecords());
+    }
+
+    @Test
+    public void testReportFormatCanBeChosen() throws IOException {
+        String[] response = request("POST", "/validate?format=text", null, CSV);
+        assertEquals("200", response[0]);
+        assertTrue(response[1], response[1].contains(FailureReason.DUPLICATE_REFERENCE.getDescription()));
+        assertEquals("400", request("POST", "/validate?format=pdf", null, CSV)[0]);
+    }
+
+    @Test
+    public void testInvalidSubmissionsAreRejected() throws IOException {
+        assertEquals("400", request("POST", "/validate", "application/xml", "<records><record reference=\"7\"></records>")[0]);
+        assertEquals("400", request("POST", "/validate", null, "Reference\n1,NL01,Ok,ten,+5,15\n")[0]);
+        assertEquals("405", request("GET", "/validate", null, null)[0]);
+    }
+
+    @Test
+    public void testXmlIsRecognizedWithAGenericContentType() throws IOException {
+        // curl --data-binary sends application/x-www-form-urlencoded unless a Content-Type is given
+        String[] response = request("POST", "/validate", "application/x-www-form-urlencoded", XML);
+        assertEquals(response[1], "200", response[0]);
+        assertTrue(response[1], response[1].contains("BALANCE_MISMATCH"));
+        // An explicit CSV type is not overruled by the body
+        assertEquals("400", request("POST", "/validate", "text/csv", XML.replace("</record>", "</record>\n"))[0]);
+    }
+
+    @Test
+    public void testCsvWithoutParseableRowsIsRejected() throws IOException {
+        assertEquals("400", request("POST", "/validate", "text/csv", "Reference;Account\n1;NL01;Ok;10;+5;15\n")[0]);
+        String header = "Reference,Account Number,Description,Start Balance,Mutation,End Balance\n";
+        assertEquals("200", request("POST", "/validate", "text/csv", header)[0]);
+    }
+
+    @Test(timeout = 30_000)
+    public void testFloodIsRejectedBeforeTheBodyIsRead() throws IOException, InterruptedException {
+        server.close();
+        server = new StatementServer(options, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1, 2);
+        server.start();
+        // Clients that never send the body they announced hold their admission
+        List<Socket> stalled = new ArrayList<>();
+        try {
+            for (int i = 0; i < 2; i++) {
+                Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+                socket.getOutputStream().write(("POST /validate HTTP/1.1\r\nHost: localhost\r\nContent-Type: text/csv\r\n"
+                        + "Content-Length: 1000\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                socket.getOutputStream().flush();
+                stalled.add(socket);
+                awaitPending(i + 1);
+            }
+            for (int i = 0; i < 10; i++) {
+                String[] response = request("POST", "/validate", "text/csv", CSV);
+                assertEquals(response[1], "503", response[0]);
+                assertTrue(response[1], response[1].contains("Too many statements"));
+            }
+        } finally {
+            for (Socket socket : stalled) {
+                socket.close();
+            }
+        }
+        // The admissions of the abandoned submissions are given back
+        awaitPending(0);
+        String[] response = request("POST", "/validate", "text/csv", CSV);
+        assertEquals(response[1], "200", response[0]);
+    }
+
+    private void awaitPending(int count) throws InterruptedException {
+        while (server.getPendingCount() != count) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testMetricsAreServed() throws IOException {
+        request("POST", "/validate", null, CSV);
+        String[] response = request("GET", "/metrics", null, null);
+        assertEquals("200", response[0]);
+        assertTrue(response[1], response[1].contains("statement_processor_records_total 3"));
+    }
+}
@@ -0,0 +1,54 @@
+// StringCacheTest.java
+package statementprocessor;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class StringCacheTest {
+
+    @Test
+    public void testEqualValuesShareOneString() {
+        StringCache cache = new StringCache(16);
+        String first = cache.intern(new String("NL01"));
+        assertSame(first, cache.intern(new String("NL01")));
+        assertNull(cache.intern(null));
+    }
+
+    @Test
+    public void testCacheIsBounded() {
+        StringCache cache = new StringCache(4);
+        String first = cache.intern(new String("value 0"));
+        for (int i = 1; i < 100; i++) {
+            assertEquals("value " + i, cache.intern("value " + i));
+        }
+        // The first value has been evicted by now, but an equal string is still returned
+        String again = cache.intern(new String("value 0"));
+        assertEquals(first, again);
+    }
+
+    @Test
+    public void testBytesAreMatchedWithoutDecoding() {
+        StringCache cache = new StringCache(16);
+        ByteBuffer buffer = ByteBuffer.wrap("1,NL01,Stra\u00dfe,NL01".getBytes(StandardCharsets.UTF_8));
+        String account = cache.intern(buffer, 2, 6, StandardCharsets.UTF_8);
+        assertEquals("NL01", account);
+        assertSame(account, cache.intern(buffer, 15, 19, StandardCharsets.UTF_8));
+        assertSame("Bytes and strings share the cache", account, cache.intern(new String("NL01")));
+
+        String street = cache.intern(buffer, 7, 14, StandardCharsets.UTF_8);
+        assertEquals("Non-ASCII bytes are decoded", "Stra\u00dfe", street);
+        assertSame(street, cache.intern(buffer, 7, 14, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testParsedRecordsShareFields() {
+        Record first = FileReaderUtil.parseCSVLine("1,NL01,Groceries,10,+5,15");
+        Record second = FileReaderUtil.parseCSVLine("2,NL01,Groceries,15,+5,20");
+        assertSame(first.getAccountNumber(), second.getAccountNumber());
+        assertSame(first.getDescription(), second.getDescription());
+    }
+}
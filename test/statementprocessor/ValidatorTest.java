@@ -31,4 +31,22 @@ public class ValidatorTest {
         assertEquals("Should identify incorrect end balance", 1, failedRecords.size());
         assertEquals("Transaction ref of failed record should match", 126, failedRecords.get(0).getTransactionReference());
     }
+
+    @Test
+    public void testEndBalanceIgnoresScale() {
+        Record record = new Record(127, "NL91ABNA0417164300", "Deposit", new BigDecimal("500.0"), "+50", new BigDecimal("550.00"));
+        assertTrue("550.0 and 550.00 should be the same balance", Validator.hasValidEndBalance(record));
+    }
+
+    @Test
+    public void testEndBalanceFallsBackToBigDecimal() {
+        Record balanced = new Record(128, "NL91ABNA0417164300", "Interest", new BigDecimal("1000.005"), "+0.01", new BigDecimal("1000.015"));
+        Record large = new Record(129, "NL91ABNA0417164300", "Large", new BigDecimal("99999999999999999999.99"), "-0.99", new BigDecimal("99999999999999999999.00"));
+        Record unbalanced = new Record(130, "NL91ABNA0417164300", "Error", new BigDecimal("1000.005"), "+0.01", new BigDecimal("1000.01"));
+        assertFalse("Amounts with three decimals cannot be represented in cents", balanced.hasFixedPointAmounts());
+        assertFalse("Amounts with more than 15 integer digits cannot be represented in cents", large.hasFixedPointAmounts());
+        assertTrue("Balanced record should be valid", Validator.hasValidEndBalance(balanced));
+        assertTrue("Balanced large record should be valid", Validator.hasValidEndBalance(large));
+        assertFalse("Unbalanced record should be invalid", Validator.hasValidEndBalance(unbalanced));
+    }
 }
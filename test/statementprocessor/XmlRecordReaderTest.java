@@ -0,0 +1,64 @@
+// XmlRecordReaderTest.java
+package statementprocessor;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class XmlRecordReaderTest {
+
+    private static XmlRecordReader readerFor(String xml) throws IOException {
+        return new XmlRecordReader(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testStreamsRecordsInDocumentOrder() throws IOException {
+        try (XmlRecordReader reader = new XmlRecordReader("test/resources/records.xml")) {
+            Record first = reader.next();
+            assertEquals("Reference of first record should match", 178792, first.getTransactionReference());
+            assertEquals("Account number should match", "NL69ABNA0433647324", first.getAccountNumber());
+            assertEquals("Description should match", "Flowers from Rik Dekker", first.getDescription());
+            assertEquals("Start balance should match", new BigDecimal("51.99"), first.getStartBalance());
+            assertEquals("End balance should match", new BigDecimal("68.96"), first.getEndBalance());
+
+            int count = 1;
+            while (reader.next() != null) {
+                count++;
+            }
+            assertEquals("XML records count mismatch", 10, count);
+        }
+    }
+
+    @Test
+    public void testFieldOrderAndUnknownElementsAreIgnored() throws IOException {
+        String xml = "<records><record reference=\"7\"><endBalance>2</endBalance><note><b>x</b></note>"
+                + "<mutation>+1</mutation><startBalance>1</startBalance><description>d</description>"
+                + "<accountNumber>NL01</accountNumber></record></records>";
+        try (XmlRecordReader reader = readerFor(xml)) {
+            Record record = reader.next();
+            assertEquals("Reference should match", 7, record.getTransactionReference());
+            assertEquals("Account number should match", "NL01", record.getAccountNumber());
+            assertNull("Only one record expected", reader.next());
+        }
+    }
+
+    @Test
+    public void testMissingFieldIsReported() throws IOException {
+        String xml = "<records><record reference=\"7\"><accountNumber>NL01</accountNumber></record></records>";
+        try (XmlRecordReader reader = readerFor(xml)) {
+            assertThrows(MalformedStatementException.class, reader::next);
+        }
+    }
+
+    @Test
+    public void testMalformedDocumentIsReported() throws IOException {
+        try (XmlRecordReader reader = readerFor("<records><record reference=\"7\"></records>")) {
+            assertThrows(MalformedStatementException.class, reader::next);
+        }
+    }
+}